@@ -63,6 +63,23 @@ interface Scheduler {
         networkConstraint: NetworkType? = null
     )
 
+    /**
+     * Schedule a task to run in the background even if the app isn't running. Unlike
+     * [networkDeferred], the task doesn't need the network to be available. As tasks scheduled
+     * this way are expected to be optional work (like filling caches), they will only be run
+     * when the device's battery isn't low.
+     *
+     * @param tag used to identify this task in future. If there is a previously scheduled task
+     * with the same tag then that task will be cancelled and this will replace it
+     * @param spec defines the task to be run
+     * @param inputData a map of input data that can be accessed by the task
+     */
+    fun deferred(
+        tag: String,
+        spec: TaskSpec,
+        inputData: Map<String, String>
+    )
+
     /**
      * Schedule a task to run in the background repeatedly even if the app isn't running. The task
      * will only be run when the network is available.
@@ -56,6 +56,14 @@ object SchedulerBuilder {
                 )
             }
 
+            override fun deferred(
+                tag: String,
+                spec: TaskSpec,
+                inputData: Map<String, String>
+            ) {
+                taskSpecScheduler.deferred(tag, spec, inputData)
+            }
+
             override fun networkDeferredRepeat(
                 tag: String,
                 spec: TaskSpec,
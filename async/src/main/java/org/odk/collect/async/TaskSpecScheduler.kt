@@ -9,6 +9,12 @@ interface TaskSpecScheduler {
         repeatPeriod: Long? = null
     )
 
+    /**
+     * Schedules a one off task that doesn't need the network, but shouldn't run while the
+     * battery is low.
+     */
+    fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>)
+
     fun isRunning(tag: String): Boolean
     fun cancel(tag: String)
     fun cancelAll()
@@ -25,14 +25,11 @@ class WorkManagerTaskSpecScheduler(private val workManager: WorkManager) : TaskS
         repeatPeriod: Long?
     ) {
         val constraints = getConstraints(networkConstraint)
-        val workManagerInputData = Data.Builder()
-            .putString(TaskSpecWorker.DATA_TASK_SPEC_CLASS, spec.javaClass.name)
-            .putBoolean(
-                TaskSpecWorker.DATA_CELLULAR_ONLY,
-                networkConstraint == Scheduler.NetworkType.CELLULAR
-            )
-            .putAll(inputData)
-            .build()
+        val workManagerInputData = getInputData(
+            spec,
+            inputData,
+            networkConstraint == Scheduler.NetworkType.CELLULAR
+        )
 
         if (repeatPeriod != null) {
             val builder = PeriodicWorkRequest.Builder(
@@ -56,16 +53,19 @@ class WorkManagerTaskSpecScheduler(private val workManager: WorkManager) : TaskS
                 builder.build()
             )
         } else {
-            val workRequest = OneTimeWorkRequest.Builder(TaskSpecWorker::class.java)
-                .addTag(tag)
-                .setConstraints(constraints)
-                .setInputData(workManagerInputData)
-                .build()
-
-            workManager.beginUniqueWork(tag, ExistingWorkPolicy.REPLACE, workRequest).enqueue()
+            enqueueOneTimeWork(tag, workManagerInputData, constraints)
         }
     }
 
+    override fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>) {
+        val constraints = Constraints
+            .Builder()
+            .setRequiresBatteryNotLow(true)
+            .build()
+
+        enqueueOneTimeWork(tag, getInputData(spec, inputData, false), constraints)
+    }
+
     override fun isRunning(tag: String): Boolean {
         val statuses = workManager.getWorkInfosByTag(tag)
         for (workInfo in statuses.get()) {
@@ -85,6 +85,24 @@ class WorkManagerTaskSpecScheduler(private val workManager: WorkManager) : TaskS
         workManager.cancelAllWork()
     }
 
+    private fun enqueueOneTimeWork(tag: String, inputData: Data, constraints: Constraints) {
+        val workRequest = OneTimeWorkRequest.Builder(TaskSpecWorker::class.java)
+            .addTag(tag)
+            .setConstraints(constraints)
+            .setInputData(inputData)
+            .build()
+
+        workManager.beginUniqueWork(tag, ExistingWorkPolicy.REPLACE, workRequest).enqueue()
+    }
+
+    private fun getInputData(spec: TaskSpec, inputData: Map<String, String>, cellularOnly: Boolean): Data {
+        return Data.Builder()
+            .putString(TaskSpecWorker.DATA_TASK_SPEC_CLASS, spec.javaClass.name)
+            .putBoolean(TaskSpecWorker.DATA_CELLULAR_ONLY, cellularOnly)
+            .putAll(inputData)
+            .build()
+    }
+
     private fun getConstraints(networkConstraint: Scheduler.NetworkType?): Constraints {
         val networkRequest = NetworkRequest.Builder().apply {
             addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
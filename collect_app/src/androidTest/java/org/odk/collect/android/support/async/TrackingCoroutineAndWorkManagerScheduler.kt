@@ -84,6 +84,15 @@ class TrackingCoroutineAndWorkManagerScheduler(private val networkStateProvider:
         deferredTasks.add(DeferredTask(tag, spec, null, inputData, networkConstraint))
     }
 
+    override fun deferred(
+        tag: String,
+        spec: TaskSpec,
+        inputData: Map<String, String>
+    ) {
+        cancelDeferred(tag)
+        deferredTasks.add(DeferredTask(tag, spec, null, inputData, null))
+    }
+
     override fun networkDeferredRepeat(
         tag: String,
         spec: TaskSpec,
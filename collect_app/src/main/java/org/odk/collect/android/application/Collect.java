@@ -35,6 +35,7 @@ import org.odk.collect.android.injection.config.CollectProjectsDependencyModule;
 import org.odk.collect.android.injection.config.CollectSelfieCameraDependencyModule;
 import org.odk.collect.android.injection.config.DaggerAppDependencyComponent;
 import org.odk.collect.android.utilities.CollectStrictMode;
+import org.odk.collect.android.utilities.ExternalizableFormDefCache;
 import org.odk.collect.android.utilities.LocaleHelper;
 import org.odk.collect.androidshared.data.AppState;
 import org.odk.collect.androidshared.data.StateStore;
@@ -209,6 +210,12 @@ public class Collect extends Application implements
         defaultSysLanguage = newConfig.locale.getLanguage();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ExternalizableFormDefCache.onTrimMemory(level);
+    }
+
     @Nullable
     public AppDependencyComponent getComponent() {
         return applicationComponent;
@@ -1,5 +1,6 @@
 package org.odk.collect.android.application.initialization
 
+import org.odk.collect.android.backgroundwork.FormDefCacheScheduler
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.projects.ProjectsRepository
@@ -8,7 +9,8 @@ import java.io.File
 
 class CachedFormsCleaner(
     private val projectsRepository: ProjectsRepository,
-    private val projectDependencyModuleFactory: ProjectDependencyFactory<ProjectDependencyModule>
+    private val projectDependencyModuleFactory: ProjectDependencyFactory<ProjectDependencyModule>,
+    private val formDefCacheScheduler: FormDefCacheScheduler
 ) : Upgrade {
     override fun key() = null
 
@@ -18,6 +20,8 @@ class CachedFormsCleaner(
             File(projectDependencyModule.cacheDir)
                 .listFiles { file -> file.name.endsWith(".formdef") }
                 ?.forEach { file -> file.delete() }
+
+            formDefCacheScheduler.scheduleCaching(project.uuid)
         }
     }
 }
@@ -0,0 +1,40 @@
+package org.odk.collect.android.backgroundwork
+
+import android.content.Context
+import androidx.work.BackoffPolicy
+import org.odk.collect.analytics.Analytics
+import org.odk.collect.android.formmanagement.FormsDataService
+import org.odk.collect.android.injection.DaggerUtils
+import org.odk.collect.async.TaskSpec
+import java.util.function.Supplier
+import javax.inject.Inject
+
+class CacheFormDefsTaskSpec : TaskSpec {
+    @Inject
+    lateinit var formsDataService: FormsDataService
+
+    override val maxRetries: Int? = null
+    override val backoffPolicy: BackoffPolicy? = null
+    override val backoffDelay: Long? = null
+
+    override fun getTask(
+        context: Context,
+        inputData: Map<String, String>,
+        isLastUniqueExecution: Boolean,
+        isStopped: (() -> Boolean)
+    ): Supplier<Boolean> {
+        DaggerUtils.getComponent(context).inject(this)
+        return Supplier {
+            val projectId = inputData[TaskData.DATA_PROJECT_ID]
+            if (projectId != null) {
+                formsDataService.cacheFormDefs(projectId, isStopped)
+            } else {
+                throw IllegalArgumentException("No project ID provided!")
+            }
+        }
+    }
+
+    override fun onException(exception: Throwable) {
+        Analytics.logNonFatal(exception)
+    }
+}
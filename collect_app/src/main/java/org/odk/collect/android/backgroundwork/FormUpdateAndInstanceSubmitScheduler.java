@@ -15,7 +15,7 @@ import org.odk.collect.shared.settings.Settings;
 
 import java.util.HashMap;
 
-public class FormUpdateAndInstanceSubmitScheduler implements FormUpdateScheduler, InstanceSubmitScheduler {
+public class FormUpdateAndInstanceSubmitScheduler implements FormUpdateScheduler, InstanceSubmitScheduler, FormDefCacheScheduler {
 
     private final Scheduler scheduler;
     private final SettingsProvider settingsProvider;
@@ -100,6 +100,13 @@ public class FormUpdateAndInstanceSubmitScheduler implements FormUpdateScheduler
         scheduler.cancelDeferred(getAutoSendTag(projectId));
     }
 
+    @Override
+    public void scheduleCaching(String projectId) {
+        HashMap<String, String> inputData = new HashMap<>();
+        inputData.put(TaskData.DATA_PROJECT_ID, projectId);
+        scheduler.deferred(getFormDefCacheTag(projectId), new CacheFormDefsTaskSpec(), inputData);
+    }
+
     @NotNull
     public String getAutoSendTag(String projectId) {
         return "AutoSendWorker:" + projectId;
@@ -114,6 +121,11 @@ public class FormUpdateAndInstanceSubmitScheduler implements FormUpdateScheduler
         return "match_exactly:" + projectId;
     }
 
+    @NotNull
+    private String getFormDefCacheTag(String projectId) {
+        return "cache_form_defs:" + projectId;
+    }
+
     @NotNull
     private String getAutoUpdateTag(String projectId) {
         return "serverPollingJob:" + projectId;
@@ -5,18 +5,21 @@ import android.content.Context
 import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteException
+import android.database.sqlite.SQLiteStatement
 import android.provider.BaseColumns._ID
+import androidx.core.database.getIntOrNull
+import androidx.core.database.getStringOrNull
 import org.odk.collect.db.sqlite.CursorExt.first
+import org.odk.collect.db.sqlite.DatabaseConnection
 import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.db.sqlite.CursorExt.getBoolean
-import org.odk.collect.db.sqlite.CursorExt.getInt
 import org.odk.collect.db.sqlite.CursorExt.getLongOrNull
 import org.odk.collect.db.sqlite.CursorExt.getString
 import org.odk.collect.db.sqlite.CursorExt.getStringOrNull
-import org.odk.collect.db.sqlite.CursorExt.rowToMap
 import org.odk.collect.db.sqlite.MigrationListDatabaseMigrator
 import org.odk.collect.db.sqlite.RowNumbers.invalidateRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.rawQueryWithRowNumber
+import org.odk.collect.db.sqlite.RowNumbers.updateRowNumbers
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 import org.odk.collect.db.sqlite.SQLiteDatabaseExt.addColumn
 import org.odk.collect.db.sqlite.SQLiteDatabaseExt.copyTableContent
@@ -24,6 +27,7 @@ import org.odk.collect.db.sqlite.SQLiteDatabaseExt.dropTable
 import org.odk.collect.db.sqlite.SQLiteDatabaseExt.getColumnNames
 import org.odk.collect.db.sqlite.SQLiteDatabaseExt.query
 import org.odk.collect.db.sqlite.SQLiteDatabaseExt.renameTable
+import org.odk.collect.db.sqlite.SqlQuery
 import org.odk.collect.db.sqlite.SynchronizedDatabaseConnection
 import org.odk.collect.db.sqlite.toSql
 import org.odk.collect.entities.javarosa.parse.EntitySchema
@@ -31,9 +35,12 @@ import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.EntityList
 import org.odk.collect.entities.storage.QueryException
-import org.odk.collect.entities.storage.getListNames
 import org.odk.collect.shared.Query
 import org.odk.collect.shared.mapColumns
+import timber.log.Timber
+import java.io.File
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 private object ListsTable {
     const val TABLE_NAME = "lists"
@@ -50,24 +57,64 @@ private object EntitiesTable {
     const val COLUMN_TRUNK_VERSION = "trunk_version"
     const val COLUMN_BRANCH_ID = "branch_id"
     const val COLUMN_STATE = "state"
+    const val COLUMN_SERVER_DIGEST = "server_digest"
     const val COLUMN_PROPERTY_PREFIX = "p_"
 
     fun getPropertyColumn(property: String) = "$COLUMN_PROPERTY_PREFIX$property"
 }
 
-class DatabaseEntitiesRepository(context: Context, dbPath: String, private val clock: () -> Long) :
-    EntitiesRepository {
+/**
+ * Store state as an Int rather than a string to avoid increasing the storage needed for
+ * entities.
+ */
+private fun convertStateToInt(state: Entity.State): Int {
+    return when (state) {
+        Entity.State.OFFLINE -> 0
+        Entity.State.ONLINE -> 1
+    }
+}
+
+private fun quote(text: String) = "\"$text\""
+
+/**
+ * @param indexExecutor runs the creation of indexes for repeatedly queried properties (see
+ * [query]) so that it doesn't block the querying thread
+ */
+class DatabaseEntitiesRepository(
+    context: Context,
+    dbPath: String,
+    private val clock: () -> Long,
+    private val indexExecutor: Executor = INDEX_EXECUTOR
+) : EntitiesRepository {
+
+    private val databasePath = dbPath + File.separator + DATABASE_NAME
 
     private val databaseConnection = SynchronizedDatabaseConnection(
         context,
         dbPath,
-        "entities.db",
+        DATABASE_NAME,
         EntitiesDatabaseMigrator(DATABASE_VERSION),
-        DATABASE_VERSION
+        DATABASE_VERSION,
+        concurrentReads = true
     )
 
+    private val listCatalog: ListCatalog
+        get() = getListCatalog(databasePath)
+
     override fun save(list: String, vararg entities: Entity) {
-        if (entities.isEmpty()) {
+        save(list, entities.asList(), emptyMap())
+    }
+
+    override fun saveFromServer(list: String, entities: List<Entity>, digests: Map<String, String>) {
+        save(list, entities, digests)
+    }
+
+    /**
+     * Saving an entity clears its server digest, so [serverDigests] are recorded in the same
+     * transaction as the last batch of [entities].
+     */
+    private fun save(list: String, entities: List<Entity>, serverDigests: Map<String, String>) {
+        if (entities.isEmpty() && (serverDigests.isEmpty() || !listExists(list))) {
             return
         }
 
@@ -76,65 +123,44 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
             createList(list)
         }
 
-        addMissingPropertyColumns(list, entities.first())
-        databaseConnection.transaction {
-            entities.forEach { entity ->
-                val existing = if (listExists) {
-                    query(
-                        quote(list),
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    ).first { mapCursorRowToEntity(it, 0) }
-                } else {
-                    null
-                }
+        if (entities.isNotEmpty()) {
+            addMissingPropertyColumns(list, entities.first())
+        }
 
-                if (existing != null) {
-                    val state = if (existing.state == Entity.State.OFFLINE) {
-                        entity.state
-                    } else {
-                        Entity.State.ONLINE
-                    }
+        val batches = entities.chunked(SAVE_BATCH_SIZE).ifEmpty { listOf(emptyList()) }
+        batches.forEachIndexed { batchIndex, batch ->
+            databaseConnection.transaction {
+                val statements = mutableMapOf<List<String>, SaveStatements>()
 
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label ?: existing.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(state))
+                try {
+                    batch.forEach { entity ->
+                        val properties = entity.properties.distinctBy { it.first.lowercase() }
+                        val saveStatements = statements.getOrPut(properties.map { it.first }) {
+                            SaveStatements(this, list, properties.map { it.first })
+                        }
 
-                        addPropertiesToContentValues(it, entity)
+                        val updated = listExists && saveStatements.update(entity, properties)
+                        if (!updated) {
+                            saveStatements.insert(entity, properties)
+                        }
                     }
+                } finally {
+                    statements.values.forEach { it.close() }
+                }
 
-                    update(
-                        quote(list),
-                        contentValues,
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    )
-                } else {
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(entity.state))
-
-                        addPropertiesToContentValues(it, entity)
-                    }
+                if (batch.isNotEmpty()) {
+                    updateRowNumbers(list)
+                }
 
-                    insertOrThrow(
-                        quote(list),
-                        null,
-                        contentValues
-                    )
+                if (batchIndex == batches.lastIndex) {
+                    saveServerDigests(this, list, serverDigests)
                 }
             }
         }
 
-        invalidateRowNumbers()
+        if (entities.isNotEmpty()) {
+            incrementListVersion(list)
+        }
     }
 
     override fun getLists(): List<EntityList> {
@@ -219,6 +245,13 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
             renameTable(tempTable, list)
             indexListTable(this, list)
         }
+
+        listCatalog.invalidateColumnNames(list)
+
+        // Property indexes are dropped along with the old table so need to be recreated
+        listCatalog.clearQueryCounts(list)
+
+        incrementListVersion(list)
     }
 
     override fun getCount(list: String): Int {
@@ -227,31 +260,82 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         }
 
         return databaseConnection.withConnection {
-            readableDatabase.rawQuery(
+            withStatement(
                 """
                 SELECT COUNT(*)
                 FROM "$list"
-                """.trimIndent(),
-                null
-            ).first {
-                it.getInt(0)
-            }!!
+                """.trimIndent()
+            ) {
+                it.simpleQueryForLong().toInt()
+            }
         }
     }
 
     override fun addList(list: String) {
         if (!listExists(list)) {
             createList(list)
-            invalidateRowNumbers()
         }
     }
 
     override fun delete(list: String, id: String) {
-        databaseConnection.withConnection {
-            writableDatabase.delete(quote(list), "${EntitiesTable.COLUMN_ID} = ?", arrayOf(id))
+        databaseConnection.transaction {
+            val rowId = rawQuery(
+                """
+                SELECT $_ID
+                FROM ${quote(list)}
+                WHERE ${EntitiesTable.COLUMN_ID} = ?
+                """.trimIndent(),
+                arrayOf(id)
+            ).first { it.getLong(0) }
+
+            if (rowId != null) {
+                delete(quote(list), "$_ID = ?", arrayOf(rowId.toString()))
+                updateRowNumbers(list, rowId)
+            }
+        }
+
+        incrementListVersion(list)
+    }
+
+    /**
+     * Streams [ids] into a table so that the delete can be done in a single statement without
+     * holding all the ids in memory. The table is in the database file rather than a TEMP one, as
+     * Android keeps those in memory, and is dropped again in the same transaction.
+     */
+    override fun deleteMissingOnlineEntities(list: String, ids: Sequence<String>) {
+        if (!listExists(list)) {
+            return
+        }
+
+        databaseConnection.transaction {
+            execSQL("CREATE TABLE $KEEP_IDS_TABLE (id text PRIMARY KEY);")
+
+            compileStatement("INSERT OR IGNORE INTO $KEEP_IDS_TABLE (id) VALUES (?);").use { statement ->
+                ids.forEach {
+                    statement.bindString(1, it)
+                    statement.executeInsert()
+                }
+            }
+
+            val selection = """
+                ${EntitiesTable.COLUMN_STATE} = ${convertStateToInt(Entity.State.ONLINE)}
+                AND ${EntitiesTable.COLUMN_ID} NOT IN (SELECT id FROM $KEEP_IDS_TABLE)
+            """.trimIndent()
+
+            val fromId = rawQuery(
+                "SELECT MIN($_ID) FROM ${quote(list)} WHERE $selection",
+                null
+            ).first { if (it.isNull(0)) null else it.getLong(0) }
+
+            if (fromId != null) {
+                delete(quote(list), selection, null)
+                updateRowNumbers(list, fromId)
+            }
+
+            execSQL("DROP TABLE $KEEP_IDS_TABLE;")
         }
 
-        invalidateRowNumbers()
+        incrementListVersion(list)
     }
 
     override fun query(list: String, query: Query?): List<Entity.Saved> {
@@ -259,14 +343,69 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
             return emptyList()
         }
 
-        return queryWithAttachedRowNumber(list, query?.mapColumns { columnName ->
+        val mappedQuery = query?.mapColumns { columnName ->
             when (columnName) {
                 EntitySchema.ID -> EntitiesTable.COLUMN_ID
                 EntitySchema.LABEL -> EntitiesTable.COLUMN_LABEL
                 EntitySchema.VERSION -> EntitiesTable.COLUMN_VERSION
                 else -> EntitiesTable.getPropertyColumn(columnName)
             }
-        })
+        }
+
+        val results = queryWithAttachedRowNumber(list, mappedQuery)
+        if (mappedQuery != null) {
+            indexQueriedProperties(list, mappedQuery)
+        }
+
+        return results
+    }
+
+    override fun getListVersion(list: String): Long {
+        return synchronized(listVersions) {
+            listVersions.getOrPut(getListVersionKey(list)) { nextListVersion++ }
+        }
+    }
+
+    override fun getServerDigests(list: String, ids: List<String>): Map<String, String> {
+        if (!listExists(list)) {
+            return emptyMap()
+        }
+
+        return databaseConnection.withConnection {
+            ids.distinct().chunked(MAX_SQL_VARIABLES).flatMap { chunk ->
+                readableDatabase.query(
+                    quote(list),
+                    arrayOf(EntitiesTable.COLUMN_ID, EntitiesTable.COLUMN_SERVER_DIGEST),
+                    "${EntitiesTable.COLUMN_ID} IN (${chunk.joinToString { "?" }}) AND ${EntitiesTable.COLUMN_SERVER_DIGEST} IS NOT NULL",
+                    chunk.toTypedArray(),
+                    null,
+                    null,
+                    null
+                ).foldAndClose {
+                    Pair(it.getString(0), it.getString(1))
+                }
+            }.toMap()
+        }
+    }
+
+    private fun saveServerDigests(db: SQLiteDatabase, list: String, digests: Map<String, String>) {
+        if (digests.isEmpty()) {
+            return
+        }
+
+        db.compileStatement(
+            """
+            UPDATE ${quote(list)}
+            SET ${EntitiesTable.COLUMN_SERVER_DIGEST} = ?
+            WHERE ${EntitiesTable.COLUMN_ID} = ?;
+            """.trimIndent()
+        ).use { statement ->
+            digests.forEach { (id, digest) ->
+                statement.bindString(1, digest)
+                statement.bindString(2, id)
+                statement.executeUpdateDelete()
+            }
+        }
     }
 
     override fun getByIndex(list: String, index: Int): Entity.Saved? {
@@ -278,18 +417,52 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         return queryWithAttachedRowNumber(list, query).firstOrNull()
     }
 
+    override fun getByIndexRange(list: String, from: Int, to: Int): List<Entity.Saved> {
+        if (!listExists(list) || from >= to) {
+            return emptyList()
+        }
+
+        return queryWithAttachedRowNumber(
+            list,
+            SqlQuery(
+                "$ROW_NUMBER > ? AND $ROW_NUMBER <= ?",
+                arrayOf(from.toString(), to.toString())
+            )
+        )
+    }
+
+    override fun getByIds(list: String, ids: List<String>): List<Entity.Saved> {
+        if (!listExists(list)) {
+            return emptyList()
+        }
+
+        return ids.distinct().chunked(MAX_SQL_VARIABLES).flatMap { chunk ->
+            queryWithAttachedRowNumber(
+                list,
+                SqlQuery(
+                    "${EntitiesTable.COLUMN_ID} IN (${chunk.joinToString { "?" }})",
+                    chunk.toTypedArray()
+                )
+            )
+        }.sortedBy { it.index }
+    }
+
     private fun queryWithAttachedRowNumber(list: String, query: Query?): List<Entity.Saved> {
+        return queryWithAttachedRowNumber(list, query?.toSql())
+    }
+
+    private fun queryWithAttachedRowNumber(list: String, sqlQuery: SqlQuery?): List<Entity.Saved> {
         try {
             val cursorMapper = { cursor: Cursor ->
+                val entityMapper = EntityCursorMapper(cursor)
                 cursor.foldAndClose {
-                    mapCursorRowToEntity(it, it.getInt(ROW_NUMBER))
+                    entityMapper.map(it)
                 }
             }
 
-            return if (query == null) {
+            return if (sqlQuery == null) {
                 databaseConnection.rawQueryWithRowNumber(list, cursorMapper = cursorMapper)
             } else {
-                val sqlQuery = query.toSql()
                 databaseConnection.rawQueryWithRowNumber(
                     list,
                     sqlQuery.selection,
@@ -302,20 +475,88 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         }
     }
 
-    private fun invalidateRowNumbers() {
-        getListNames().forEach {
-            databaseConnection.invalidateRowNumbers(it)
+    /**
+     * Creates indexes for property columns that are repeatedly used in queries so that follow
+     * up queries don't need to scan the whole list. Columns compared numerically get an index on
+     * their `REAL` value so that it matches the SQL generated by [toSql].
+     *
+     * Indexes are created after a column has been queried [INDEX_QUERY_THRESHOLD] times to
+     * avoid slowing down one off queries (and writes) for lists that aren't filtered often.
+     * Queries are counted in the [ListCatalog] so that counts are shared by all repositories
+     * for the database (and so aren't lost when a new form session creates a new repository).
+     *
+     * The indexes are created on [indexExecutor] in a normal transaction: SQLite only blocks
+     * other writers while it builds an index and recompiles statements that were prepared
+     * against the old schema itself, so the connection doesn't need to be reset.
+     */
+    private fun indexQueriedProperties(list: String, query: Query) {
+        val newIndexes = getIndexableProperties(query).filter {
+            listCatalog.countQuery(list, it) == INDEX_QUERY_THRESHOLD
+        }
+
+        if (newIndexes.isNotEmpty()) {
+            indexExecutor.execute {
+                try {
+                    databaseConnection.transaction {
+                        newIndexes.forEach {
+                            execSQL(
+                                """
+                                CREATE INDEX IF NOT EXISTS ${quote(it.getName(list))} ON ${quote(list)} (${it.getExpression()});
+                                """.trimIndent()
+                            )
+                        }
+                    }
+                } catch (e: SQLiteException) {
+                    Timber.w(e)
+                }
+            }
+        }
+    }
+
+    private fun getIndexableProperties(query: Query): List<PropertyIndex> {
+        val property = when (query) {
+            is Query.StringEq -> PropertyIndex(query.column, false)
+            is Query.NumericEq -> PropertyIndex(query.column, true)
+            is Query.NumericLt -> PropertyIndex(query.column, true)
+            is Query.NumericLte -> PropertyIndex(query.column, true)
+            is Query.NumericGt -> PropertyIndex(query.column, true)
+            is Query.NumericGte -> PropertyIndex(query.column, true)
+            is Query.And -> return getIndexableProperties(query.queryA) + getIndexableProperties(query.queryB)
+            is Query.Or -> return getIndexableProperties(query.queryA) + getIndexableProperties(query.queryB)
+            else -> null
+        }
+
+        return if (property != null && property.column.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)) {
+            listOf(property)
+        } else {
+            emptyList()
         }
     }
 
+    private fun incrementListVersion(list: String) {
+        synchronized(listVersions) {
+            listVersions[getListVersionKey(list)] = nextListVersion++
+        }
+    }
+
+    private fun getListVersionKey(list: String) = "$databasePath:$list"
+
     private fun listExists(list: String): Boolean {
-        return databaseConnection.withConnection {
-            readableDatabase
-                .query(
-                    ListsTable.TABLE_NAME,
-                    selection = "${ListsTable.COLUMN_NAME} = ?",
-                    selectionArgs = arrayOf(list)
-                ).use { it.count } > 0
+        return listCatalog.getListNames {
+            databaseConnection.withConnection {
+                readableDatabase
+                    .query(ListsTable.TABLE_NAME)
+                    .foldAndClose { it.getString(ListsTable.COLUMN_NAME) }
+                    .toSet()
+            }
+        }.contains(list)
+    }
+
+    private fun getListColumnNames(list: String): List<String> {
+        return listCatalog.getColumnNames(list) {
+            databaseConnection.withConnection {
+                readableDatabase.getColumnNames(quote(list))
+            }
         }
     }
 
@@ -323,6 +564,10 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         databaseConnection.resetTransaction {
             createList(this, list)
         }
+
+        listCatalog.addList(list)
+        databaseConnection.invalidateRowNumbers(list)
+        incrementListVersion(list)
     }
 
     private fun createList(db: SQLiteDatabase, list: String) {
@@ -348,7 +593,8 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
                         ${EntitiesTable.COLUMN_VERSION} integer,
                         ${EntitiesTable.COLUMN_TRUNK_VERSION} integer,
                         ${EntitiesTable.COLUMN_BRANCH_ID} text,
-                        ${EntitiesTable.COLUMN_STATE} integer NOT NULL
+                        ${EntitiesTable.COLUMN_STATE} integer NOT NULL,
+                        ${EntitiesTable.COLUMN_SERVER_DIGEST} text
                     );
             """.trimIndent()
         )
@@ -363,27 +609,35 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
     }
 
     private fun addMissingPropertyColumns(list: String, entity: Entity) {
-        databaseConnection.resetTransaction {
-            val columnNames = getColumnNames(quote(list))
-
-            val expectedColumns = entity.properties
-                .map { EntitiesTable.getPropertyColumn(it.first) }
-                .distinctBy { it.lowercase() }
+        val expectedColumns = entity.properties
+            .map { EntitiesTable.getPropertyColumn(it.first) }
+            .distinctBy { it.lowercase() }
 
-            val newColumns = expectedColumns
-                .filterNot { columnName ->
-                    columnNames.any {
-                        it.equals(
-                            columnName,
-                            ignoreCase = true
-                        )
-                    }
-                }
+        if (getMissingColumns(getListColumnNames(list), expectedColumns).isEmpty()) {
+            return
+        }
 
+        databaseConnection.resetTransaction {
+            // Check again in case another repository added columns since the catalog was read
+            val newColumns = getMissingColumns(this.getColumnNames(quote(list)), expectedColumns)
             if (newColumns.isNotEmpty()) {
                 addPropertyColumns(this, list, newColumns)
             }
         }
+
+        listCatalog.invalidateColumnNames(list)
+    }
+
+    private fun getMissingColumns(columnNames: List<String>, expectedColumns: List<String>): List<String> {
+        return expectedColumns
+            .filterNot { columnName ->
+                columnNames.any {
+                    it.equals(
+                        columnName,
+                        ignoreCase = true
+                    )
+                }
+            }
     }
 
     private fun addPropertyColumns(
@@ -396,12 +650,6 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         }
     }
 
-    private fun addPropertiesToContentValues(contentValues: ContentValues, entity: Entity) {
-        entity.properties.forEach { (name, value) ->
-            contentValues.put(quote(EntitiesTable.getPropertyColumn(name)), value)
-        }
-    }
-
     private fun mapCursorRowToEntityList(cursor: Cursor): EntityList {
         return EntityList(
             cursor.getString(ListsTable.COLUMN_NAME),
@@ -411,57 +659,308 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String, private val c
         )
     }
 
-    private fun mapCursorRowToEntity(
-        cursor: Cursor,
-        rowId: Int
-    ): Entity.Saved {
-        val map = cursor.rowToMap()
+    /**
+     * Write-through cache of the lists in the database and the columns of their tables. This
+     * means that checking whether a list exists or has the columns for an entity's properties
+     * (which happens on nearly every call) doesn't need to hit the database. The catalog also
+     * counts how often properties are queried (see [indexQueriedProperties]).
+     *
+     * Loads (which access the database) are done without holding the catalog's lock so that
+     * they don't block other users of the catalog or wait on the database while holding it.
+     * Loaded values are only kept if there have been no updates since the load started.
+     */
+    private class ListCatalog {
 
-        val propertyColumns = map.keys.filter {
-            it.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)
+        private var generation = 0L
+        private var listNames: Set<String>? = null
+        private val columnNames = mutableMapOf<String, List<String>>()
+        private val queryCounts = mutableMapOf<Pair<String, PropertyIndex>, Int>()
+
+        fun getListNames(load: () -> Set<String>): Set<String> {
+            val (cached, loadGeneration) = synchronized(this) { Pair(listNames, generation) }
+            if (cached != null) {
+                return cached
+            }
+
+            return load().also {
+                synchronized(this) {
+                    if (generation == loadGeneration) {
+                        listNames = it
+                    }
+                }
+            }
         }
 
-        val properties =
-            propertyColumns.fold(emptyList<Pair<String, String>>()) { accum, property ->
-                accum + Pair(
-                    property.removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX),
-                    map[property] ?: ""
-                )
+        @Synchronized
+        fun addList(list: String) {
+            generation++
+            listNames = listNames?.plus(list)
+            columnNames.remove(list)
+        }
+
+        fun getColumnNames(list: String, load: () -> List<String>): List<String> {
+            val (cached, loadGeneration) = synchronized(this) { Pair(columnNames[list], generation) }
+            if (cached != null) {
+                return cached
             }
 
-        val state = if (map[EntitiesTable.COLUMN_STATE]!!.toInt() == 0) {
-            Entity.State.OFFLINE
-        } else {
-            Entity.State.ONLINE
-        }
-
-        return Entity.Saved(
-            map[EntitiesTable.COLUMN_ID]!!,
-            map[EntitiesTable.COLUMN_LABEL],
-            map[EntitiesTable.COLUMN_VERSION]!!.toInt(),
-            properties,
-            state,
-            rowId - 1,
-            map[EntitiesTable.COLUMN_TRUNK_VERSION]?.toInt(),
-            map[EntitiesTable.COLUMN_BRANCH_ID]!!
-        )
+            return load().also {
+                synchronized(this) {
+                    if (generation == loadGeneration) {
+                        columnNames[list] = it
+                    }
+                }
+            }
+        }
+
+        @Synchronized
+        fun invalidateColumnNames(list: String) {
+            generation++
+            columnNames.remove(list)
+        }
+
+        /**
+         * @return the number of times [property] has been queried for [list] (including this one)
+         */
+        @Synchronized
+        fun countQuery(list: String, property: PropertyIndex): Int {
+            val key = Pair(list, property)
+            return (queryCounts.getOrDefault(key, 0) + 1).also { queryCounts[key] = it }
+        }
+
+        @Synchronized
+        fun clearQueryCounts(list: String) {
+            queryCounts.keys.removeAll { it.first == list }
+        }
+    }
+
+    private data class PropertyIndex(val column: String, val numeric: Boolean) {
+
+        fun getName(list: String): String {
+            return if (numeric) {
+                "${list}_${column}_numeric_index"
+            } else {
+                "${list}_${column}_index"
+            }
+        }
+
+        fun getExpression(): String {
+            return if (numeric) {
+                "CAST(${quote(column)} AS REAL)"
+            } else {
+                quote(column)
+            }
+        }
     }
 
     /**
-     * Store state as an Int rather than a string to avoid increasing the storage needed for
-     * entities.
+     * Maps rows from a cursor (with a [ROW_NUMBER] column) to [Entity.Saved] instances. Column
+     * indexes are looked up once for the cursor rather than for each row, and each row's
+     * properties are read straight into a list sized for the list's property columns.
      */
-    private fun convertStateToInt(state: Entity.State): Int {
-        return when (state) {
-            Entity.State.OFFLINE -> 0
-            Entity.State.ONLINE -> 1
+    private class EntityCursorMapper(cursor: Cursor) {
+
+        private val idIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_ID)
+        private val labelIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_LABEL)
+        private val versionIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_VERSION)
+        private val trunkVersionIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_TRUNK_VERSION)
+        private val branchIdIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_BRANCH_ID)
+        private val stateIndex = cursor.getColumnIndexOrThrow(EntitiesTable.COLUMN_STATE)
+        private val rowNumberIndex = cursor.getColumnIndexOrThrow(ROW_NUMBER)
+
+        private val propertyIndexes = cursor.columnNames.indices.filter {
+            cursor.columnNames[it].startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)
+        }
+
+        private val propertyNames = propertyIndexes.map {
+            cursor.columnNames[it].removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX)
+        }
+
+        fun map(cursor: Cursor): Entity.Saved {
+            val properties = ArrayList<Pair<String, String>>(propertyIndexes.size)
+            propertyIndexes.forEachIndexed { index, columnIndex ->
+                properties.add(Pair(propertyNames[index], cursor.getString(columnIndex) ?: ""))
+            }
+
+            val state = if (cursor.getInt(stateIndex) == 0) {
+                Entity.State.OFFLINE
+            } else {
+                Entity.State.ONLINE
+            }
+
+            return Entity.Saved(
+                cursor.getString(idIndex),
+                cursor.getStringOrNull(labelIndex),
+                cursor.getInt(versionIndex),
+                properties,
+                state,
+                cursor.getInt(rowNumberIndex) - 1,
+                cursor.getIntOrNull(trunkVersionIndex),
+                cursor.getString(branchIdIndex)
+            )
         }
     }
 
-    private fun quote(text: String) = "\"$text\""
+    /**
+     * Compiled statements used to save entities with a given set of properties. Updates are
+     * attempted first (preserving an existing entity's `_id` and so its index) and an insert is
+     * only made if no row was updated. This avoids having to look up each entity before saving it.
+     *
+     * `INSERT ... ON CONFLICT DO UPDATE` would allow a single statement here, but that
+     * is only supported by SQLite 3.24+ (API 30+).
+     */
+    private class SaveStatements(db: SQLiteDatabase, list: String, properties: List<String>) {
+
+        private val propertyColumns = properties.map { quote(EntitiesTable.getPropertyColumn(it)) }
+
+        private val updateStatement = db.compileStatement(
+            """
+            UPDATE ${quote(list)} SET
+                ${EntitiesTable.COLUMN_LABEL} = COALESCE(?, ${EntitiesTable.COLUMN_LABEL}),
+                ${EntitiesTable.COLUMN_VERSION} = ?,
+                ${EntitiesTable.COLUMN_TRUNK_VERSION} = ?,
+                ${EntitiesTable.COLUMN_BRANCH_ID} = ?,
+                ${EntitiesTable.COLUMN_SERVER_DIGEST} = NULL,
+                ${EntitiesTable.COLUMN_STATE} = CASE WHEN ${EntitiesTable.COLUMN_STATE} = ${convertStateToInt(Entity.State.OFFLINE)} THEN ? ELSE ${convertStateToInt(Entity.State.ONLINE)} END${propertyColumns.joinToString("") { ", $it = ?" }}
+            WHERE ${EntitiesTable.COLUMN_ID} = ?;
+            """.trimIndent()
+        )
+
+        private val insertStatement = db.compileStatement(
+            """
+            INSERT INTO ${quote(list)} (
+                ${EntitiesTable.COLUMN_ID},
+                ${EntitiesTable.COLUMN_LABEL},
+                ${EntitiesTable.COLUMN_VERSION},
+                ${EntitiesTable.COLUMN_TRUNK_VERSION},
+                ${EntitiesTable.COLUMN_BRANCH_ID},
+                ${EntitiesTable.COLUMN_STATE}${propertyColumns.joinToString("") { ", $it" }}
+            ) VALUES (${List(6 + propertyColumns.size) { "?" }.joinToString()});
+            """.trimIndent()
+        )
+
+        /**
+         * @return `true` if an existing entity was updated
+         */
+        fun update(entity: Entity, properties: List<Pair<String, String>>): Boolean {
+            updateStatement.clearBindings()
+            bindNullable(updateStatement, 1, entity.label)
+            updateStatement.bindLong(2, entity.version.toLong())
+            bindNullable(updateStatement, 3, entity.trunkVersion?.toLong())
+            updateStatement.bindString(4, entity.branchId)
+            updateStatement.bindLong(5, convertStateToInt(entity.state).toLong())
+            properties.forEachIndexed { index, (_, value) ->
+                updateStatement.bindString(6 + index, value)
+            }
+            updateStatement.bindString(6 + properties.size, entity.id)
+
+            return updateStatement.executeUpdateDelete() > 0
+        }
+
+        fun insert(entity: Entity, properties: List<Pair<String, String>>) {
+            insertStatement.clearBindings()
+            insertStatement.bindString(1, entity.id)
+            bindNullable(insertStatement, 2, entity.label)
+            insertStatement.bindLong(3, entity.version.toLong())
+            bindNullable(insertStatement, 4, entity.trunkVersion?.toLong())
+            insertStatement.bindString(5, entity.branchId)
+            insertStatement.bindLong(6, convertStateToInt(entity.state).toLong())
+            properties.forEachIndexed { index, (_, value) ->
+                insertStatement.bindString(7 + index, value)
+            }
+
+            insertStatement.executeInsert()
+        }
+
+        fun close() {
+            updateStatement.close()
+            insertStatement.close()
+        }
+
+        private fun bindNullable(statement: SQLiteStatement, index: Int, value: String?) {
+            if (value != null) {
+                statement.bindString(index, value)
+            } else {
+                statement.bindNull(index)
+            }
+        }
+
+        private fun bindNullable(statement: SQLiteStatement, index: Int, value: Long?) {
+            if (value != null) {
+                statement.bindLong(index, value)
+            } else {
+                statement.bindNull(index)
+            }
+        }
+    }
 
     companion object {
-        const val DATABASE_VERSION = 4
+        const val DATABASE_VERSION = 5
+        private const val DATABASE_NAME = "entities.db"
+
+        /**
+         * List versions are shared between repository instances for the same database (like
+         * the underlying connections in [SynchronizedDatabaseConnection]) as a new repository
+         * instance might be used to make changes. Versions are taken from a single counter
+         * so that a list never gets a version it had before its database was removed.
+         */
+        private val listVersions = mutableMapOf<String, Long>()
+        private var nextListVersion = 0L
+
+        /**
+         * Like [listVersions], the catalog is shared between repository instances for the same
+         * database.
+         */
+        private val listCatalogs = mutableMapOf<String, ListCatalog>()
+
+        /**
+         * The number of entities saved per transaction. Splitting large saves up means other
+         * connection users (like forms filtering on entities) aren't blocked for the whole save.
+         */
+        private const val SAVE_BATCH_SIZE = 1000
+
+        /**
+         * SQLite versions before 3.32 (API 31) only allow 999 variables in a statement.
+         */
+        private const val MAX_SQL_VARIABLES = 999
+
+        private const val INDEX_QUERY_THRESHOLD = 3
+
+        /**
+         * Index creation for all databases is done one at a time on a single background thread.
+         */
+        private val INDEX_EXECUTOR = Executors.newSingleThreadExecutor()
+
+        private const val KEEP_IDS_TABLE = "keep_ids"
+
+        init {
+            DatabaseConnection.addCloseListener { databasePath, removed ->
+                clearDatabaseState(databasePath, removed)
+            }
+        }
+
+        private fun getListCatalog(databasePath: String): ListCatalog {
+            return synchronized(listCatalogs) {
+                listCatalogs.getOrPut(databasePath) { ListCatalog() }
+            }
+        }
+
+        /**
+         * Drops the catalog for a database whenever its connection is closed as the database
+         * might have been changed (or removed) by something other than a repository. List
+         * versions only need to change if the database has been removed.
+         */
+        private fun clearDatabaseState(databasePath: String, removed: Boolean) {
+            synchronized(listCatalogs) {
+                listCatalogs.remove(databasePath)
+            }
+
+            if (removed) {
+                synchronized(listVersions) {
+                    listVersions.keys.removeAll { it.startsWith("$databasePath:") }
+                }
+            }
+        }
     }
 }
 
@@ -484,6 +983,20 @@ class EntitiesDatabaseMigrator(databaseVersion: Int) : MigrationListDatabaseMigr
             ListsTable.COLUMN_LAST_UPDATED,
             "date"
         )
+    },
+    { db ->
+        db.rawQuery(
+            """
+            SELECT name
+            FROM sqlite_master
+            WHERE type = 'table' AND name IN (SELECT ${ListsTable.COLUMN_NAME} FROM ${ListsTable.TABLE_NAME})
+            """.trimIndent(),
+            null
+        ).foldAndClose {
+            it.getString(0)
+        }.forEach {
+            db.addColumn(it, EntitiesTable.COLUMN_SERVER_DIGEST, "text")
+        }
     }
 ) {
     override fun createDbForVersion(db: SQLiteDatabase, version: Int) {
@@ -508,7 +1021,7 @@ class EntitiesDatabaseMigrator(databaseVersion: Int) : MigrationListDatabaseMigr
                 );
                 """.trimIndent()
             )
-        } else if (version == 4) {
+        } else if (version == 4 || version == 5) {
             db.execSQL(
                 """
                 CREATE TABLE IF NOT EXISTS ${ListsTable.TABLE_NAME} (
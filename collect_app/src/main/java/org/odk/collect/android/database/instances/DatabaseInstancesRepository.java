@@ -114,9 +114,20 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
 
     @Override
     public int getCountByStatus(String... status) {
-        try (Cursor cursorForAllByStatus = getCursorForAllByStatus(status)) {
-            return cursorForAllByStatus.getCount();
+        if (status.length == 0) {
+            return 0;
         }
+
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM " + INSTANCES_TABLE_NAME + " WHERE " + STATUS + " IN (?");
+        for (int i = 1; i < status.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(")");
+
+        return databaseConnection.withStatement(sql.toString(), statement -> {
+            statement.bindAllArgsAsStrings(status);
+            return (int) statement.simpleQueryForLong();
+        });
     }
 
 
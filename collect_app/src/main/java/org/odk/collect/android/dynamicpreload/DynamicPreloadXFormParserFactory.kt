@@ -6,9 +6,17 @@ import org.javarosa.core.util.externalizable.Externalizable
 import org.javarosa.core.util.externalizable.PrototypeFactory
 import org.javarosa.xform.parse.IXFormParserFactory
 import org.javarosa.xform.parse.XFormParser
+import org.javarosa.xpath.expr.XPathBinaryOpExpr
 import org.javarosa.xpath.expr.XPathExpression
+import org.javarosa.xpath.expr.XPathFilterExpr
+import org.javarosa.xpath.expr.XPathFuncExpr
+import org.javarosa.xpath.expr.XPathPathExpr
+import org.javarosa.xpath.expr.XPathStringLiteral
+import org.javarosa.xpath.expr.XPathUnaryOpExpr
+import org.odk.collect.android.dynamicpreload.handler.ExternalDataHandlerPull
 import java.io.DataInputStream
 import java.io.DataOutputStream
+import java.util.Locale
 
 class DynamicPreloadXFormParserFactory(base: IXFormParserFactory) :
     IXFormParserFactory.Wrapper(base) {
@@ -20,6 +28,11 @@ class DynamicPreloadXFormParserFactory(base: IXFormParserFactory) :
     }
 }
 
+/**
+ * Detects whether a form uses `pulldata()` or `search()` and, where the data set and column
+ * arguments are literals, collects the columns those calls look rows up by so that they can be
+ * indexed when the data set is imported (see [DynamicPreloadExtra.lookupColumns]).
+ */
 class DynamicPreloadParseProcessor :
     XFormParser.XPathProcessor,
     XFormParser.QuestionProcessor,
@@ -27,36 +40,116 @@ class DynamicPreloadParseProcessor :
 
     private var containsPullData = false
     private var containsSearch = false
+    private val lookupColumns = mutableMapOf<String, MutableSet<String>>()
 
     override fun processXPath(xPathExpression: XPathExpression) {
-        if (containsPullData) {
-            return // No need to search if we already found pulldata
-        }
-
-        if (xPathExpression.containsFunc("pulldata")) {
+        if (xPathExpression.containsFunc(ExternalDataHandlerPull.HANDLER_NAME)) {
             containsPullData = true
+            collectPullDataColumns(xPathExpression)
         }
     }
 
     override fun processQuestion(question: QuestionDef) {
-        if (containsSearch) {
-            return // No need to search if we already found search
-        }
-
-        if (ExternalDataUtil.getSearchXPathExpression(question.appearanceAttr) != null) {
+        val search = ExternalDataUtil.getSearchXPathExpression(question.appearanceAttr)
+        if (search != null) {
             containsSearch = true
+
+            // search(dataSet, type, queriedColumns, queriedValue, filterColumn, filterValue)
+            if (search.args.size == 6) {
+                addLookupColumn(search.args[0], search.args[4])
+            }
         }
     }
 
     override fun processFormDef(formDef: FormDef) {
         if (containsPullData || containsSearch) {
-            formDef.extras.put(DynamicPreloadExtra())
+            formDef.extras.put(DynamicPreloadExtra(lookupColumns))
+        }
+    }
+
+    private fun collectPullDataColumns(expression: XPathExpression?) {
+        when (expression) {
+            is XPathFuncExpr -> {
+                // pulldata(dataSet, queriedColumn, referenceColumn, referenceValue)
+                if (expression.id.name.equals(ExternalDataHandlerPull.HANDLER_NAME, ignoreCase = true) &&
+                    expression.args.size == 4
+                ) {
+                    addLookupColumn(expression.args[0], expression.args[2])
+                }
+
+                expression.args.forEach { collectPullDataColumns(it) }
+            }
+
+            is XPathBinaryOpExpr -> {
+                collectPullDataColumns(expression.a)
+                collectPullDataColumns(expression.b)
+            }
+
+            is XPathUnaryOpExpr -> collectPullDataColumns(expression.a)
+
+            is XPathFilterExpr -> {
+                collectPullDataColumns(expression.x)
+                expression.predicates.forEach { collectPullDataColumns(it) }
+            }
+
+            is XPathPathExpr -> {
+                collectPullDataColumns(expression.filtExpr)
+                expression.steps.forEach { step ->
+                    step.predicates.forEach { collectPullDataColumns(it) }
+                }
+            }
+        }
+    }
+
+    private fun addLookupColumn(dataSetArg: XPathExpression, columnArg: XPathExpression) {
+        if (dataSetArg !is XPathStringLiteral || columnArg !is XPathStringLiteral) {
+            return
+        }
+
+        val column = columnArg.s.trim()
+        if (column.isNotEmpty()) {
+            lookupColumns.getOrPut(normalizeDataSetName(dataSetArg.s)) { mutableSetOf() }.add(column)
+        }
+    }
+
+    companion object {
+
+        /**
+         * Matches the data set name normalization done by the `pulldata()`/`search()` handlers
+         * (SCTO-545).
+         */
+        @JvmStatic
+        fun normalizeDataSetName(dataSetName: String): String {
+            return dataSetName.trim().lowercase(Locale.US).removeSuffix(".csv")
         }
     }
 }
 
-class DynamicPreloadExtra : Externalizable {
-    override fun readExternal(`in`: DataInputStream?, pf: PrototypeFactory?) = Unit
+/**
+ * Marks a form as using dynamic preload data. [lookupColumns] maps (normalized) data set names
+ * to the columns that `pulldata()`/`search()` calls in the form look rows up by.
+ */
+class DynamicPreloadExtra(lookupColumns: Map<String, Set<String>> = emptyMap()) : Externalizable {
 
-    override fun writeExternal(out: DataOutputStream?) = Unit
+    var lookupColumns: Map<String, Set<String>> = lookupColumns
+        private set
+
+    override fun readExternal(`in`: DataInputStream, pf: PrototypeFactory?) {
+        val dataSets = mutableMapOf<String, Set<String>>()
+        repeat(`in`.readInt()) {
+            val dataSetName = `in`.readUTF()
+            dataSets[dataSetName] = (0 until `in`.readInt()).map { `in`.readUTF() }.toSet()
+        }
+
+        lookupColumns = dataSets
+    }
+
+    override fun writeExternal(out: DataOutputStream) {
+        out.writeInt(lookupColumns.size)
+        lookupColumns.forEach { (dataSetName, columns) ->
+            out.writeUTF(dataSetName)
+            out.writeInt(columns.size)
+            columns.forEach { out.writeUTF(it) }
+        }
+    }
 }
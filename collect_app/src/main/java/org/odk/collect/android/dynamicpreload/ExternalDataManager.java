@@ -39,5 +39,15 @@ public interface ExternalDataManager {
      */
     ExternalSQLiteOpenHelper getDatabase(String dataSetName, boolean required);
 
+    /**
+     * Returns the result of a previous pulldata() lookup with the same arguments (since the
+     * manager was last closed) or null if there hasn't been one
+     */
+    String getPullDataResult(String dataSetName, String queriedColumn, String referenceColumn,
+                             String referenceValue);
+
+    void putPullDataResult(String dataSetName, String queriedColumn, String referenceColumn,
+                           String referenceValue, String result);
+
     void close();
 }
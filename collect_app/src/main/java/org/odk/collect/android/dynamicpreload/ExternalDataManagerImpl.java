@@ -22,8 +22,11 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import timber.log.Timber;
 
@@ -38,6 +41,10 @@ public class ExternalDataManagerImpl implements ExternalDataManager {
 
     private final Map<String, ExternalSQLiteOpenHelper> dbMap = new HashMap<>();
 
+    // calculates are re-evaluated on every relevant answer change, so pulldata() results are
+    // kept for the form session rather than querying the data set again each time
+    private final Map<List<String>, String> pullDataResults = new ConcurrentHashMap<>();
+
     private final File mediaFolder;
 
     public ExternalDataManagerImpl(File mediaFolder) {
@@ -64,8 +71,22 @@ public class ExternalDataManagerImpl implements ExternalDataManager {
         return sqLiteOpenHelper;
     }
 
+    @Override
+    public String getPullDataResult(String dataSetName, String queriedColumn, String referenceColumn,
+                                    String referenceValue) {
+        return pullDataResults.get(Arrays.asList(dataSetName, queriedColumn, referenceColumn, referenceValue));
+    }
+
+    @Override
+    public void putPullDataResult(String dataSetName, String queriedColumn, String referenceColumn,
+                                  String referenceValue, String result) {
+        pullDataResults.put(Arrays.asList(dataSetName, queriedColumn, referenceColumn, referenceValue), result);
+    }
+
     @Override
     public void close() {
+        pullDataResults.clear();
+
         if (dbMap != null) {
             for (ExternalSQLiteOpenHelper externalSQLiteOpenHelper : dbMap.values()) {
                 Timber.w("Closing database handler:%s", externalSQLiteOpenHelper.toString());
@@ -25,7 +25,9 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -41,10 +43,21 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
 
     private final Supplier<Boolean> isCancelled;
     private final Consumer<Function<Resources, String>> progressReporter;
+    private final Map<String, Set<String>> lookupColumns;
 
     public ExternalDataReaderImpl(Supplier<Boolean> isCancelled, Consumer<Function<Resources, String>> progressReporter) {
+        this(isCancelled, progressReporter, Collections.emptyMap());
+    }
+
+    /**
+     * @param lookupColumns the columns (keyed by normalized data set name) that the form looks
+     *                      rows up by. These are indexed after each data set is imported.
+     */
+    public ExternalDataReaderImpl(Supplier<Boolean> isCancelled, Consumer<Function<Resources, String>> progressReporter,
+                                  Map<String, Set<String>> lookupColumns) {
         this.isCancelled = isCancelled;
         this.progressReporter = progressReporter;
+        this.lookupColumns = lookupColumns;
     }
 
     @Override
@@ -67,12 +80,21 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         if (dbFile.exists()) {
             // Determine if we need to reimport
             if (ExternalSQLiteOpenHelper.shouldUpdateDBforDataSet(dbFile, dataSetFile)) {
+                // try only applying what's changed before rebuilding the whole database
+                if (new ExternalSQLiteOpenHelper(dbFile).importChangesFromCSV(dataSetFile, isCancelled, progressReporter)) {
+                    createLookupIndexes(dataSetName, dbFile);
+                    return true;
+                } else if (isCancelled.get()) {
+                    return false; // the database hasn't been changed so can be kept
+                }
+
                 boolean deleted = dbFile.delete();
                 if (!deleted) {
                     Timber.e(new Error(dataSetFile.getName() + " has changed but we could not delete the previous DB at " + dbFile.getAbsolutePath()));
                     return true;
                 }
             } else {
+                createLookupIndexes(dataSetName, dbFile);
                 return true;
             }
         }
@@ -105,7 +127,16 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
             return false;
 
         }
+
+        createLookupIndexes(dataSetName, dbFile);
         return true;
     }
 
+    private void createLookupIndexes(String dataSetName, File dbFile) {
+        Set<String> columns = lookupColumns.get(DynamicPreloadParseProcessor.normalizeDataSetName(dataSetName));
+        if (columns != null && !columns.isEmpty() && dbFile.exists()) {
+            ExternalSQLiteOpenHelper.createLookupIndexes(dbFile, columns);
+        }
+    }
+
 }
@@ -16,9 +16,7 @@ object ExternalDataUseCases {
         isCancelled: Supplier<Boolean>,
         progressReporter: Consumer<Function<Resources, String>>
     ) {
-        if (form.extras.get(DynamicPreloadExtra::class.java) == null) {
-            return
-        }
+        val dynamicPreloadExtra = form.extras.get(DynamicPreloadExtra::class.java) ?: return
 
         val csvFiles = mediaDir.listFiles { file ->
             val lowerCaseName = file.name.lowercase()
@@ -43,7 +41,11 @@ object ExternalDataUseCases {
                     resources.getString(org.odk.collect.strings.R.string.survey_loading_reading_csv_message)
                 }
                 val externalDataReader: ExternalDataReader =
-                    ExternalDataReaderImpl(isCancelled, progressReporter)
+                    ExternalDataReaderImpl(
+                        isCancelled,
+                        progressReporter,
+                        dynamicPreloadExtra.lookupColumns
+                    )
                 externalDataReader.doImport(externalDataMap)
             }
         }
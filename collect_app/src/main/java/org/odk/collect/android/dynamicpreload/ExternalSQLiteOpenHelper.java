@@ -23,8 +23,12 @@ import static org.odk.collect.strings.localization.LocalizedApplicationKt.getLoc
 import android.content.ContentValues;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
@@ -38,13 +42,16 @@ import org.odk.collect.db.sqlite.CustomSQLiteQueryExecutor;
 import org.odk.collect.db.sqlite.SQLiteUtils;
 import org.odk.collect.shared.strings.Md5;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -62,6 +69,10 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private static final char DELIMITING_CHAR = ",".charAt(0);
     private static final char QUOTE_CHAR = "\"".charAt(0);
     private static final char ESCAPE_CHAR = "\0".charAt(0);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final String CSV_TABLE_NAME = "externalDataCsv";
+    private static final String CHANGED_ROWS_TABLE_NAME = "externalDataChangedRows";
 
     private File dataSetFile;
     private ExternalDataReader externalDataReader;
@@ -89,6 +100,281 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Updates a previously imported data set to match its (changed) CSV. Only the rows that were
+     * added, changed or removed are written, and this all happens in one transaction, so the
+     * table's indexes are kept rather than rebuilt. Rows are matched up by the first column ending
+     * in "_key", or the first column if there isn't one. Keys must be unique.
+     *
+     * @return false if the changes can't be applied this way (the columns have changed or keys
+     * aren't unique for example) or the import was cancelled. The database is left as it was in
+     * that case.
+     */
+    boolean importChangesFromCSV(File dataSetFile, Supplier<Boolean> isCancelled,
+                                 Consumer<Function<Resources, String>> progressReporter) {
+        this.dataSetFile = dataSetFile;
+        this.isCancelled = isCancelled;
+        this.progressReporter = progressReporter;
+
+        SQLiteDatabase db = null;
+        CSVReader reader = null;
+        try {
+            db = getWritableDatabase();
+            if (!SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME)
+                    || !SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_METADATA_TABLE_NAME)) {
+                return false;
+            }
+
+            onProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_import_progress_message,
+                    dataSetFile.getName(), ""));
+
+            reader = createCsvReader(dataSetFile);
+            String[] headerRow = reader.readNext();
+            if (headerRow == null) {
+                return false;
+            }
+
+            headerRow[0] = removeByteOrderMark(headerRow[0]);
+
+            List<String> conflictingColumns = ExternalDataUtil.findMatchingColumnsAfterSafeningNames(headerRow);
+            if (!ExternalDataUtil.containsAnyData(headerRow) || (conflictingColumns != null && !conflictingColumns.isEmpty())) {
+                return false;
+            }
+
+            // work out which table column each CSV column goes in (the same way as a full import)
+            List<String> columns = new ArrayList<>();
+            int[] columnIndexes = new int[headerRow.length];
+            int sortColumnIndex = -1;
+            int keyColumnIndex = -1;
+            for (int i = 0; i < headerRow.length; i++) {
+                String columnName = headerRow[i].trim();
+                if (columnName.length() == 0) {
+                    columnIndexes[i] = -1;
+                    continue;
+                }
+
+                String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName);
+                if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
+                    sortColumnIndex = columns.size();
+                } else if (keyColumnIndex == -1 && columnName.endsWith("_key")) {
+                    keyColumnIndex = columns.size();
+                }
+
+                columnIndexes[i] = columns.size();
+                columns.add(safeColumnName);
+            }
+
+            boolean sortColumnInCsv = sortColumnIndex != -1;
+            if (!sortColumnInCsv) {
+                sortColumnIndex = columns.size();
+                columns.add(ExternalDataUtil.SORT_COLUMN_NAME);
+            }
+
+            if (keyColumnIndex == -1) {
+                keyColumnIndex = 0;
+            }
+
+            if (keyColumnIndex == sortColumnIndex || !getColumnNames(db, ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME).equals(columns)) {
+                return false;
+            }
+
+            String keyColumn = columns.get(keyColumnIndex);
+            if (!hasUniqueKeys(db, keyColumn)) {
+                return false;
+            }
+
+            List<String> textColumns = new ArrayList<>(columns);
+            textColumns.remove(ExternalDataUtil.SORT_COLUMN_NAME);
+            boolean hasFullTextIndex = SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME);
+
+            db.beginTransaction();
+            try {
+                // the CSV is written to a table in the database file (rather than a TEMP one, which
+                // Android keeps in memory) so that the diff can be done by SQLite without holding
+                // either version of the data set in memory
+                db.execSQL("DROP TABLE IF EXISTS " + CSV_TABLE_NAME);
+                db.execSQL("DROP TABLE IF EXISTS " + CHANGED_ROWS_TABLE_NAME);
+                db.execSQL(getCreateCsvTableSql(columns, sortColumnIndex, keyColumnIndex));
+                db.execSQL("CREATE TABLE " + CHANGED_ROWS_TABLE_NAME + " (id INTEGER PRIMARY KEY)");
+
+                SQLiteStatement insertStatement = db.compileStatement(getInsertSql(CSV_TABLE_NAME, columns));
+                try {
+                    int rowCount = 0;
+                    String[] row = reader.readNext();
+                    while (row != null) {
+                        if (isCancelled()) {
+                            return false;
+                        }
+
+                        if (!ExternalDataUtil.containsAnyData(row)) {
+                            row = reader.readNext();
+                            continue;
+                        }
+
+                        if (row.length < headerRow.length) {
+                            row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                        }
+
+                        Object[] values = new Object[columns.size()];
+                        for (int i = 0; i < row.length && i < headerRow.length; i++) {
+                            if (columnIndexes[i] == -1) {
+                                continue;
+                            }
+
+                            if (columnIndexes[i] == sortColumnIndex) {
+                                values[sortColumnIndex] = Double.parseDouble(row[i]);
+                            } else {
+                                values[columnIndexes[i]] = row[i];
+                            }
+                        }
+
+                        if (!sortColumnInCsv) {
+                            values[sortColumnIndex] = (double) (rowCount + 1);
+                        }
+
+                        bindValues(insertStatement, values, 1);
+                        try {
+                            insertStatement.executeInsert();
+                        } catch (SQLiteConstraintException e) {
+                            // the row's key is missing or a duplicate
+                            return false;
+                        }
+
+                        row = reader.readNext();
+                        rowCount++;
+                        if (rowCount % PROGRESS_INTERVAL == 0) {
+                            onRowsImported(rowCount);
+                        }
+                    }
+                } finally {
+                    insertStatement.close();
+                }
+
+                if (isCancelled()) {
+                    return false;
+                }
+
+                int changedRowCount = applyChanges(db, columns, textColumns, keyColumn, hasFullTextIndex);
+
+                db.execSQL("DROP TABLE " + CSV_TABLE_NAME);
+                db.execSQL("DROP TABLE " + CHANGED_ROWS_TABLE_NAME);
+
+                ContentValues metadata = new ContentValues();
+                metadata.put(ExternalDataUtil.COLUMN_MD5_HASH, Md5.getMd5Hash(dataSetFile));
+                int updated = db.update(ExternalDataUtil.EXTERNAL_METADATA_TABLE_NAME, metadata,
+                        CustomSQLiteQueryBuilder.quoteIdentifier(ExternalDataUtil.COLUMN_DATASET_FILENAME) + " = ?",
+                        new String[]{dataSetFile.getName()});
+                if (updated != 1) {
+                    return false;
+                }
+
+                db.setTransactionSuccessful();
+                Timber.i("Applied %d changed rows from %s", changedRowCount, dataSetFile.getName());
+                onProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_import_completed_message));
+                return true;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            Timber.w(e, "Could not apply changes from %s to the existing data set", dataSetFile.getName());
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    Timber.e(e);
+                }
+            }
+
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * @return false if any of the imported rows are missing a key or share one with another row
+     */
+    private static boolean hasUniqueKeys(SQLiteDatabase db, String keyColumn) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) - COUNT(DISTINCT " + keyColumn + " COLLATE BINARY) FROM "
+                + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, null) == 0;
+    }
+
+    /**
+     * Makes the data table match the CSV table by deleting, updating and inserting rows (in that
+     * order). Rows are matched up by (case sensitive) key. The FTS table reads its content from
+     * the data table so has to be told about changes to it: old values are removed before a row
+     * changes and new ones added after. Rows where only the sort value has changed (all the rows
+     * after an added or removed one when the CSV has no sort column) skip that as the sort column
+     * isn't in the FTS table.
+     *
+     * @return the number of rows that were changed
+     */
+    private static int applyChanges(SQLiteDatabase db, List<String> columns, List<String> textColumns,
+                                    String keyColumn, boolean hasFullTextIndex) {
+        String dataTable = ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
+        String sortColumn = ExternalDataUtil.SORT_COLUMN_NAME;
+        String matchingCsvRow = CSV_TABLE_NAME + " WHERE " + CSV_TABLE_NAME + "." + keyColumn
+                + " = " + dataTable + "." + keyColumn + " COLLATE BINARY";
+        int changedRowCount = 0;
+
+        String removed = "NOT EXISTS (SELECT 1 FROM " + matchingCsvRow + ")";
+        if (hasFullTextIndex) {
+            db.execSQL(getFullTextUpdateSql(textColumns, true, removed));
+        }
+        changedRowCount += executeUpdateDelete(db, "DELETE FROM " + dataTable + " WHERE " + removed);
+
+        List<String> textChanges = new ArrayList<>();
+        for (String column : textColumns) {
+            textChanges.add(CSV_TABLE_NAME + "." + column + " IS NOT " + dataTable + "." + column + " COLLATE BINARY");
+        }
+
+        db.execSQL("INSERT INTO " + CHANGED_ROWS_TABLE_NAME + " (id) SELECT rowid FROM " + dataTable
+                + " WHERE EXISTS (SELECT 1 FROM " + matchingCsvRow + " AND (" + String.join(" OR ", textChanges) + "))");
+        String changed = "rowid IN (SELECT id FROM " + CHANGED_ROWS_TABLE_NAME + ")";
+        if (hasFullTextIndex) {
+            db.execSQL(getFullTextUpdateSql(textColumns, true, changed));
+        }
+        changedRowCount += executeUpdateDelete(db, getUpdateFromCsvSql(columns, matchingCsvRow, changed));
+        if (hasFullTextIndex) {
+            db.execSQL(getFullTextUpdateSql(textColumns, false, changed));
+        }
+
+        changedRowCount += executeUpdateDelete(db, getUpdateFromCsvSql(Collections.singletonList(sortColumn), matchingCsvRow,
+                "EXISTS (SELECT 1 FROM " + matchingCsvRow + " AND " + CSV_TABLE_NAME + "." + sortColumn + " IS NOT " + dataTable + "." + sortColumn + ")"));
+
+        // new rows get rowids after all the existing ones
+        long lastRowId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(rowid), 0) FROM " + dataTable, null);
+        changedRowCount += executeUpdateDelete(db, "INSERT INTO " + dataTable + " (" + String.join(", ", columns) + ")"
+                + " SELECT " + String.join(", ", columns) + " FROM " + CSV_TABLE_NAME
+                + " WHERE " + CSV_TABLE_NAME + "." + keyColumn + " COLLATE BINARY NOT IN (SELECT " + keyColumn + " FROM " + dataTable + ")"
+                + " ORDER BY " + CSV_TABLE_NAME + ".rowid");
+        if (hasFullTextIndex) {
+            db.execSQL(getFullTextUpdateSql(textColumns, false, "rowid > " + lastRowId));
+        }
+
+        return changedRowCount;
+    }
+
+    private static int executeUpdateDelete(SQLiteDatabase db, String sql) {
+        try (SQLiteStatement statement = db.compileStatement(sql)) {
+            return statement.executeUpdateDelete();
+        }
+    }
+
+    private static void bindValues(SQLiteStatement statement, Object[] values, int firstIndex) {
+        statement.clearBindings();
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof Double) {
+                statement.bindDouble(firstIndex + i, (Double) value);
+            } else if (value != null) {
+                statement.bindString(firstIndex + i, (String) value);
+            }
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         if (externalDataReader == null) {
@@ -119,13 +405,7 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
 
         CSVReader reader = null;
         try {
-            reader = new CSVReaderBuilder(new FileReader(dataSetFile))
-                    .withCSVParser(new CSVParserBuilder()
-                            .withSeparator(DELIMITING_CHAR)
-                            .withQuoteChar(QUOTE_CHAR)
-                            .withEscapeChar(ESCAPE_CHAR)
-                            .build())
-                    .build();
+            reader = createCsvReader(dataSetFile);
             String[] headerRow = reader.readNext();
 
             headerRow[0] = removeByteOrderMark(headerRow[0]);
@@ -199,54 +479,37 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                 }
             }
 
-            // populate the database
-            String[] row = reader.readNext();
-            int rowCount = 0;
-            while (row != null && !isCancelled()) {
-                // SCTO-894 - first we should make sure that this is not an empty line
-                if (!ExternalDataUtil.containsAnyData(row)) {
-                    // yes, that is an empty row, ignore it
-                    row = reader.readNext();
+            // populate the database using a single compiled insert. Safe column names and bind
+            // positions are worked out once here rather than for every row. All rows are inserted
+            // in the transaction SQLiteOpenHelper wraps onCreate in.
+            int[] bindIndexes = new int[headerRow.length];
+            int sortColumnHeaderIndex = -1;
+            List<String> insertColumns = new ArrayList<>();
+            for (int i = 0; i < headerRow.length; i++) {
+                String columnName = headerRow[i].trim();
+                if (columnName.length() == 0) {
                     continue;
                 }
 
-                // SCTO-894 - then check if the row contains less values than the header
-                // we should not ignore the existing values in the row,
-                // we will just fill up the rest with empty strings
-                if (row.length < headerRow.length) {
-                    row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName, columnNamesCache);
+                if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
+                    sortColumnHeaderIndex = i;
                 }
 
-                ContentValues values = new ContentValues();
-                if (!sortColumnAlreadyPresent) {
-                    values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
-                }
+                insertColumns.add(safeColumnName);
+                bindIndexes[i] = insertColumns.size();
+            }
 
-                for (int i = 0; i < row.length && i < headerRow.length; i++) {
-                    String columnName = headerRow[i].trim();
-                    String columnValue = row[i];
-                    if (columnName.length() == 0) {
-                        continue;
-                    }
-                    String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
-                            columnNamesCache);
-                    if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
-                        try {
-                            values.put(safeColumnName, Double.parseDouble(columnValue));
-                        } catch (NumberFormatException e) {
-                            throw new ExternalDataException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_sortBy_numeric_error, columnValue));
-                        }
-                    } else {
-                        values.put(safeColumnName, columnValue);
-                    }
-                }
-                db.insertOrThrow(tableName, null, values);
-                row = reader.readNext();
-                rowCount++;
-                if (rowCount % 100 == 0) {
-                    onProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_import_progress_message,
-                            dataSetFile.getName(), " (" + rowCount + " records so far)"));
-                }
+            if (!sortColumnAlreadyPresent) {
+                insertColumns.add(ExternalDataUtil.SORT_COLUMN_NAME);
+            }
+
+            SQLiteStatement insertStatement = db.compileStatement(getInsertSql(tableName, insertColumns));
+            try {
+                importRows(reader, headerRow, bindIndexes, sortColumnHeaderIndex,
+                        sortColumnAlreadyPresent ? 0 : insertColumns.size(), insertStatement);
+            } finally {
+                insertStatement.close();
             }
 
             if (isCancelled()) {
@@ -262,6 +525,10 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                     db.execSQL(createIndexCommand);
                 }
 
+                List<String> textColumns = new ArrayList<>(insertColumns);
+                textColumns.remove(ExternalDataUtil.SORT_COLUMN_NAME);
+                createFullTextIndex(db, tableName, textColumns);
+
                 Timber.w("Read all data from %s", dataSetFile.toString());
                 onProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_import_completed_message));
             }
@@ -276,6 +543,162 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * @param bindIndexes the position of each header's column in the insert (or 0 if the column
+     *                    is skipped)
+     * @param sortColumnHeaderIndex the index of the header for the sort column if the CSV
+     *                              includes one
+     * @param rowNumberBindIndex where to bind the row number as the sort value (or 0 if the CSV
+     *                           includes its own sort column)
+     */
+    private void importRows(CSVReader reader, String[] headerRow, int[] bindIndexes,
+                            int sortColumnHeaderIndex, int rowNumberBindIndex,
+                            SQLiteStatement insertStatement) throws Exception {
+        String[] row = reader.readNext();
+        int rowCount = 0;
+        while (row != null && !isCancelled()) {
+            // SCTO-894 - first we should make sure that this is not an empty line
+            if (!ExternalDataUtil.containsAnyData(row)) {
+                // yes, that is an empty row, ignore it
+                row = reader.readNext();
+                continue;
+            }
+
+            // SCTO-894 - then check if the row contains less values than the header
+            // we should not ignore the existing values in the row,
+            // we will just fill up the rest with empty strings
+            if (row.length < headerRow.length) {
+                row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+            }
+
+            insertStatement.clearBindings();
+            if (rowNumberBindIndex != 0) {
+                insertStatement.bindLong(rowNumberBindIndex, rowCount + 1);
+            }
+
+            for (int i = 0; i < row.length && i < headerRow.length; i++) {
+                if (bindIndexes[i] == 0) {
+                    continue;
+                }
+
+                String columnValue = row[i];
+                if (i == sortColumnHeaderIndex) {
+                    try {
+                        insertStatement.bindDouble(bindIndexes[i], Double.parseDouble(columnValue));
+                    } catch (NumberFormatException e) {
+                        throw new ExternalDataException(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_sortBy_numeric_error, columnValue));
+                    }
+                } else if (columnValue != null) {
+                    insertStatement.bindString(bindIndexes[i], columnValue);
+                }
+            }
+            insertStatement.executeInsert();
+            row = reader.readNext();
+            rowCount++;
+            if (rowCount % PROGRESS_INTERVAL == 0) {
+                onRowsImported(rowCount);
+            }
+        }
+    }
+
+    /**
+     * Creates an FTS4 table over the data set's text columns that `search()` can use to avoid
+     * scanning every row. The FTS table uses the data table as its content so values aren't
+     * stored twice. If the table can't be created (if the FTS module or tokenizer isn't
+     * available for example), searches just fall back to LIKE.
+     */
+    private static void createFullTextIndex(SQLiteDatabase db, String tableName, List<String> columns) {
+        if (columns.isEmpty()) {
+            return;
+        }
+
+        String ftsTableName = ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME;
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE " + ftsTableName + " USING fts4(content=\"" + tableName + "\", "
+                    + String.join(", ", columns) + ", tokenize=unicode61);");
+            db.execSQL("INSERT INTO " + ftsTableName + "(" + ftsTableName + ") VALUES('rebuild');");
+        } catch (SQLiteException e) {
+            Timber.w(e, "Could not create a full-text index for %s", tableName);
+            db.execSQL("DROP TABLE IF EXISTS " + ftsTableName);
+        }
+    }
+
+    /**
+     * The CSV table has the same columns as the data table, but without its collation so that
+     * comparisons are case sensitive. The key column can't be empty and must be unique.
+     */
+    private static String getCreateCsvTableSql(List<String> columns, int sortColumnIndex, int keyColumnIndex) {
+        StringBuilder sb = new StringBuilder()
+                .append("CREATE TABLE ")
+                .append(CSV_TABLE_NAME)
+                .append(" (");
+
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(columns.get(i));
+            if (i == sortColumnIndex) {
+                sb.append(" real");
+            } else if (i == keyColumnIndex) {
+                sb.append(" text NOT NULL UNIQUE");
+            } else {
+                sb.append(" text");
+            }
+        }
+
+        return sb.append(")").toString();
+    }
+
+    /**
+     * @param matchingCsvRow selects the CSV table's row for the data table's row being updated
+     */
+    private static String getUpdateFromCsvSql(List<String> columns, String matchingCsvRow, String where) {
+        StringBuilder sb = new StringBuilder()
+                .append("UPDATE ")
+                .append(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME)
+                .append(" SET ");
+
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            sb.append(i == 0 ? "" : ", ")
+                    .append(column)
+                    .append(" = (SELECT ")
+                    .append(column)
+                    .append(" FROM ")
+                    .append(matchingCsvRow)
+                    .append(")");
+        }
+
+        return sb.append(" WHERE ").append(where).toString();
+    }
+
+    /**
+     * @param delete whether the statement should remove the values for the rows from the FTS table
+     *               rather than add them
+     * @param where selects the rows in the data table to add or remove
+     */
+    private static String getFullTextUpdateSql(List<String> columns, boolean delete, String where) {
+        String ftsTableName = ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME;
+        return "INSERT INTO " + ftsTableName
+                + " (" + (delete ? ftsTableName + ", " : "") + "docid, " + String.join(", ", columns) + ")"
+                + " SELECT " + (delete ? "'delete', " : "") + "rowid, " + String.join(", ", columns)
+                + " FROM " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME
+                + " WHERE " + where;
+    }
+
+    private static String getInsertSql(String tableName, List<String> columns) {
+        StringBuilder sb = new StringBuilder()
+                .append("INSERT INTO ")
+                .append(tableName)
+                .append(" (")
+                .append(String.join(", ", columns))
+                .append(") VALUES (");
+
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+
+        return sb.append(")").toString();
+    }
+
     protected boolean isCancelled() {
         return isCancelled.get();
     }
@@ -334,6 +757,57 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         return newFileMd5 == null || !newFileMd5.equals(priorImportMd5);
     }
 
+    /**
+     * Indexes the columns a form looks rows up by with `pulldata()` or `search()` so those lookups
+     * don't need to scan the whole table. Columns that don't exist in the data set and `_key`
+     * columns (which are indexed on import) are skipped. Indexes are only created if missing so
+     * this is cheap to call every time a form is loaded.
+     */
+    static void createLookupIndexes(File dbFile, Set<String> columns) {
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(dbFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            if (!SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME)) {
+                return;
+            }
+
+            List<String> existingColumns = getColumnNames(db, ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME);
+            for (String column : columns) {
+                if (column.trim().endsWith("_key")) {
+                    continue;
+                }
+
+                String safeColumnName = ExternalDataUtil.toSafeColumnName(column);
+                if (!existingColumns.contains(safeColumnName)) {
+                    continue;
+                }
+
+                String indexSQL = "CREATE INDEX IF NOT EXISTS " + safeColumnName + "_lookup_idx ON "
+                        + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME + " (" + safeColumnName + ");";
+                Timber.w(indexSQL);
+                db.execSQL(indexSQL);
+            }
+        } catch (SQLiteException e) {
+            Timber.e(e);
+        } finally {
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    private static List<String> getColumnNames(SQLiteDatabase db, String tableName) {
+        List<String> columnNames = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null)) {
+            int nameColumnIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columnNames.add(cursor.getString(nameColumnIndex));
+            }
+        }
+
+        return columnNames;
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
     }
@@ -342,6 +816,25 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         progressReporter.accept(resources -> message);
     }
 
+    /**
+     * Reports progress without building the (localized) message until it's needed.
+     */
+    private void onRowsImported(int rowCount) {
+        String dataSetName = dataSetFile.getName();
+        progressReporter.accept(resources -> getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.ext_import_progress_message,
+                dataSetName, " (" + rowCount + " records so far)"));
+    }
+
+    private static CSVReader createCsvReader(File dataSetFile) throws IOException {
+        return new CSVReaderBuilder(new BufferedReader(new FileReader(dataSetFile), READ_BUFFER_SIZE))
+                .withCSVParser(new CSVParserBuilder()
+                        .withSeparator(DELIMITING_CHAR)
+                        .withQuoteChar(QUOTE_CHAR)
+                        .withEscapeChar(ESCAPE_CHAR)
+                        .build())
+                .build();
+    }
+
     /**
      * Removes a Byte Order Mark (BOM) from the start of a String.
      *
@@ -351,4 +844,5 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
     private String removeByteOrderMark(String bomCheckString) {
         return bomCheckString.startsWith("\uFEFF") ? bomCheckString.substring(1) : bomCheckString;
     }
+
 }
@@ -83,6 +83,12 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
         // SCTO-545
         dataSetName = normalize(dataSetName);
 
+        String cachedResult = getExternalDataManager().getPullDataResult(dataSetName, queriedColumn,
+                referenceColumn, referenceValue);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
         Cursor c = null;
         try {
             ExternalSQLiteOpenHelper sqLiteOpenHelper = getExternalDataManager().getDatabase(
@@ -98,14 +104,19 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
 
             c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, columns, selection,
                     selectionArgs, null, null, null);
+            String result;
             if (c.getCount() > 0) {
                 c.moveToFirst();
-                return ExternalDataUtil.nullSafe(c.getString(0));
+                result = ExternalDataUtil.nullSafe(c.getString(0));
             } else {
                 Timber.i("Could not find a value in %s where the column %s has the value %s",
                         queriedColumn, referenceColumn, referenceValue);
-                return "";
+                result = "";
             }
+
+            getExternalDataManager().putPullDataResult(dataSetName, queriedColumn, referenceColumn,
+                    referenceValue, result);
+            return result;
         } catch (SQLiteException e) {
             Timber.i(e);
             return "";
@@ -22,6 +22,7 @@ import static org.odk.collect.strings.localization.LocalizedApplicationKt.getLoc
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 
 import org.javarosa.core.model.SelectChoice;
 import org.javarosa.core.model.condition.EvaluationContext;
@@ -33,6 +34,7 @@ import org.odk.collect.android.dynamicpreload.ExternalDataUtil;
 import org.odk.collect.android.dynamicpreload.ExternalSQLiteOpenHelper;
 import org.odk.collect.android.dynamicpreload.ExternalSelectChoice;
 import org.odk.collect.android.exception.ExternalDataException;
+import org.odk.collect.db.sqlite.SQLiteUtils;
 import org.odk.collect.shared.strings.StringUtils;
 
 import java.util.ArrayList;
@@ -180,6 +182,29 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
                 selectionArgs = null;
             }
 
+            // LIKE expressions can't use an index, so when the data set has a full-text index
+            // use it to narrow down the rows they need to be checked against
+            String matchArgument = searchRows ? externalDataSearchType.constructMatchArgument(queriedValue) : null;
+            if (matchArgument != null && SQLiteUtils.doesTableExist(db, ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME)) {
+                String matchSelection = "rowid IN (SELECT docid FROM " + ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME
+                        + " WHERE " + ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME + " MATCH ?) AND ( " + selection + " )";
+                String[] matchSelectionArgs = new String[selectionArgs.length + 1];
+                matchSelectionArgs[0] = matchArgument;
+                System.arraycopy(selectionArgs, 0, matchSelectionArgs, 1, selectionArgs.length);
+
+                try {
+                    c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, matchSelection,
+                            matchSelectionArgs, null, null, ExternalDataUtil.SORT_COLUMN_NAME);
+                    return createDynamicSelectChoices(c, selectColumnMap, safeImageColumn);
+                } catch (SQLiteException e) {
+                    Timber.w(e, "Full-text search failed for %s. Falling back to LIKE.", dataSetName);
+                    if (c != null) {
+                        c.close();
+                        c = null;
+                    }
+                }
+            }
+
             try {
                 c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, selection,
                         selectionArgs, null, null, ExternalDataUtil.SORT_COLUMN_NAME);
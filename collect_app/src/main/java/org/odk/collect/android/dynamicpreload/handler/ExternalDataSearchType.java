@@ -18,6 +18,10 @@
 
 package org.odk.collect.android.dynamicpreload.handler;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Author: Meletis Margaritis
  * Date: 20/05/13
@@ -25,38 +29,48 @@ package org.odk.collect.android.dynamicpreload.handler;
  */
 enum ExternalDataSearchType {
 
-    CONTAINS("contains") {
+    CONTAINS("contains", false) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return '%' + queriedValue + '%';
         }
     },
 
-    MATCHES("matches") {
+    MATCHES("matches", true) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return queriedValue;
         }
     },
 
-    STARTS("startsWith") {
+    STARTS("startsWith", true) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return queriedValue + '%';
         }
     },
 
-    ENDS("endsWith") {
+    ENDS("endsWith", false) {
         @Override
         protected String getSingleLikeArgument(String queriedValue) {
             return '%' + queriedValue;
         }
     };
 
+    // mirrors the separators of the FTS "unicode61" tokenizer
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
     private final String keyword;
+    private final boolean startsWithWholeToken;
 
-    ExternalDataSearchType(String keyword) {
+    /**
+     * @param startsWithWholeToken whether a matching value always has a token that begins with
+     *                             the first token of the queried value (rather than just
+     *                             containing it)
+     */
+    ExternalDataSearchType(String keyword, boolean startsWithWholeToken) {
         this.keyword = keyword;
+        this.startsWithWholeToken = startsWithWholeToken;
     }
 
     public String getKeyword() {
@@ -85,5 +99,42 @@ enum ExternalDataSearchType {
         return args;
     }
 
+    /**
+     * Builds an FTS MATCH argument that finds every row the LIKE arguments would (and possibly
+     * more) so it can be used to narrow down the rows the LIKE expression needs to check. Each
+     * whole token of the queried value is matched as a token prefix. Returns null if there are no
+     * tokens that can be used or if the value contains LIKE wildcards.
+     */
+    public String constructMatchArgument(String queriedValue) {
+        if (queriedValue == null || queriedValue.contains("%") || queriedValue.contains("_")) {
+            return null;
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(queriedValue)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+
+        // the first token could be the end of a longer token in the value
+        if (!startsWithWholeToken && !tokens.isEmpty() && !TOKEN_SEPARATOR.matcher(queriedValue.substring(0, 1)).matches()) {
+            tokens.remove(0);
+        }
+
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String token : tokens) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"').append(token).append("*\"");
+        }
+        return sb.toString();
+    }
+
     protected abstract String getSingleLikeArgument(String queriedValue);
 }
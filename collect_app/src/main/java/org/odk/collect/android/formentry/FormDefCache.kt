@@ -8,5 +8,24 @@ interface FormDefCache {
 
     @Throws(IOException::class)
     fun writeCache(formDef: FormDef?, formPath: String?)
+
+    /**
+     * Like [writeCache] but uses an existing hash of the form XML rather than calculating one.
+     */
+    @Throws(IOException::class)
+    fun writeCache(formDef: FormDef?, formPath: String?, md5Hash: String?)
+
     fun readCache(formXml: File?): FormDef?
+
+    /**
+     * Like [readCache] but uses an existing hash of the form XML (that might be out of date)
+     * rather than calculating one.
+     */
+    fun readCache(formXml: File?, md5Hash: String?): FormDef?
+
+    /**
+     * Whether there is a cached version of the form XML with the given hash. This doesn't check
+     * that the cached form can actually be read.
+     */
+    fun isCached(md5Hash: String): Boolean
 }
@@ -10,6 +10,7 @@ import org.javarosa.form.api.FormEntryController
 import org.javarosa.xform.parse.XFormParser
 import org.javarosa.xform.util.XFormUtils
 import org.odk.collect.android.dynamicpreload.ExternalAnswerResolver
+import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
 import org.odk.collect.android.instancemanagement.isEdit
 import org.odk.collect.android.javarosawrapper.FailedValidationResult
 import org.odk.collect.android.javarosawrapper.FormController
@@ -66,7 +67,32 @@ object FormEntryUseCases {
             formMediaDir
         )
 
-        return createFormDefFromCacheOrXml(xForm, formDefCache)!!
+        return createFormDefFromCacheOrXml(xForm, form.mD5Hash, formDefCache)!!
+    }
+
+    /**
+     * Parses the form and writes it to the cache (if it isn't there already) so that opening it
+     * for the first time doesn't require parsing the XML. Forms with secondary instances loaded
+     * from a `src` (like CSVs or last-saved) are skipped: those are resolved using the global
+     * [ReferenceManager] while parsing, and that could be set up for a form that is being filled.
+     *
+     * @return true if the form is now in the cache
+     */
+    fun cacheFormDef(form: Form, formDefCache: FormDefCache): Boolean {
+        val md5Hash = form.mD5Hash ?: return false
+        if (formDefCache.isCached(md5Hash)) {
+            return true
+        }
+
+        val xForm = File(form.formFilePath)
+        if (!xForm.exists() || FormMetadataParser.readMetadata(xForm).hasExternalSecondaryInstances) {
+            return false
+        }
+
+        val lastSavedSrc = FileUtils.getOrCreateLastSavedSrc(xForm)
+        val formDef = XFormUtils.getFormFromFormXml(xForm.absolutePath, lastSavedSrc) ?: return false
+        formDefCache.writeCache(formDef, xForm.path, md5Hash)
+        return true
     }
 
     fun loadBlankForm(
@@ -204,15 +230,19 @@ object FormEntryUseCases {
         return instancesRepository.getOneByPath(instancePath)
     }
 
-    private fun createFormDefFromCacheOrXml(xForm: File, formDefCache: FormDefCache): FormDef? {
-        val formDefFromCache = formDefCache.readCache(xForm)
+    private fun createFormDefFromCacheOrXml(
+        xForm: File,
+        md5Hash: String?,
+        formDefCache: FormDefCache
+    ): FormDef? {
+        val formDefFromCache = formDefCache.readCache(xForm, md5Hash)
         if (formDefFromCache != null) {
             return formDefFromCache
         }
 
         val lastSavedSrc = FileUtils.getOrCreateLastSavedSrc(xForm)
         return XFormUtils.getFormFromFormXml(xForm.absolutePath, lastSavedSrc)?.also {
-            formDefCache.writeCache(it, xForm.path)
+            formDefCache.writeCache(it, xForm.path, md5Hash)
         }
     }
 
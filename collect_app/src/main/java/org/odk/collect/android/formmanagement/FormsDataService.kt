@@ -4,6 +4,8 @@ import androidx.lifecycle.LiveData
 import androidx.lifecycle.asLiveData
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.StateFlow
+import org.odk.collect.android.backgroundwork.FormDefCacheScheduler
+import org.odk.collect.android.formentry.FormEntryUseCases
 import org.odk.collect.android.formmanagement.download.FormDownloadException
 import org.odk.collect.android.formmanagement.download.ServerFormDownloader
 import org.odk.collect.android.formmanagement.matchexactly.ServerFormsSynchronizer
@@ -11,12 +13,14 @@ import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.state.DataKeys
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidshared.data.DataService
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
+import timber.log.Timber
 import java.io.File
 import java.util.function.Supplier
 
@@ -24,6 +28,7 @@ class FormsDataService(
     appState: AppState,
     private val notifier: Notifier,
     private val projectDependencyModuleFactory: ProjectDependencyFactory<ProjectDependencyModule>,
+    private val formDefCacheScheduler: FormDefCacheScheduler,
     private val clock: Supplier<Long>
 ) : DataService(appState) {
 
@@ -97,6 +102,11 @@ class FormsDataService(
                 ))
             }
         }
+
+        if (results.values.any { it == null }) {
+            formDefCacheScheduler.scheduleCaching(projectId)
+        }
+
         return results
     }
 
@@ -126,6 +136,7 @@ class FormsDataService(
                             )
 
                             notifier.onUpdatesDownloaded(results, projectId)
+                            formDefCacheScheduler.scheduleCaching(projectId)
                         } else {
                             notifier.onUpdatesAvailable(updatedForms, projectId)
                         }
@@ -184,6 +195,11 @@ class FormsDataService(
 
                 update(projectId)
                 finishSyncWithServer(projectId, exception)
+
+                if (exception == null) {
+                    formDefCacheScheduler.scheduleCaching(projectId)
+                }
+
                 exception == null
             } else {
                 false
@@ -191,6 +207,31 @@ class FormsDataService(
         }
     }
 
+    /**
+     * Parses and caches any of the project's forms that aren't already in the FormDef cache so
+     * that they open quickly the first time.
+     *
+     * @return false if this was stopped before all forms were cached
+     */
+    fun cacheFormDefs(projectId: String, isStopped: () -> Boolean = { false }): Boolean {
+        val projectDependencies = projectDependencyModuleFactory.create(projectId)
+        val formDefCache = ExternalizableFormDefCache(projectDependencies.cacheDir)
+
+        projectDependencies.formsRepository.all.filter { !it.isDeleted }.forEach { form ->
+            if (isStopped()) {
+                return false
+            }
+
+            try {
+                FormEntryUseCases.cacheFormDef(form, formDefCache)
+            } catch (e: Exception) {
+                Timber.w(e, "Unable to cache %s", form.formFilePath)
+            }
+        }
+
+        return true
+    }
+
     fun deleteForm(projectId: String, formId: Long) {
         val projectDependencies = projectDependencyModuleFactory.create(projectId)
         LocalFormUseCases.deleteForm(
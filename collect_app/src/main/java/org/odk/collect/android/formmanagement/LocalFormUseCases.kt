@@ -16,11 +16,21 @@ import timber.log.Timber
 import java.io.File
 import java.util.Collections
 import java.util.LinkedList
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
 
 object LocalFormUseCases {
 
     private var counter = 0
 
+    /**
+     * Parsing is mostly CPU bound, but there's no point having more threads than this as
+     * forms are saved one at a time.
+     */
+    private val PARSE_THREADS = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+
     @JvmStatic
     fun deleteForm(
         formsRepository: FormsRepository,
@@ -98,76 +108,63 @@ object LocalFormUseCases {
                     formsRepository.delete(id)
                 }
 
-                // Step3: go through uriToUpdate to parse and update each in turn.
-                // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
-                // form XML. This takes time for large forms and/or slow devices.
+                // Step3: go through uriToUpdate to parse and update each of them.
+                // Note: parseForm parses the form XML. This takes time for large forms and/or
+                // slow devices so forms are parsed in parallel (and saved one at a time here).
                 Collections.shuffle(uriToUpdate) // Big win if multiple DiskSyncTasks running
-                for (entry in uriToUpdate) {
-                    val formDefFile = entry!!.file
-                    // Probably someone overwrite the file on the sdcard
-                    // So re-parse it and update it's information
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
-                    } catch (e: IllegalArgumentException) {
-                        errors.append(e.message).append("\r\n")
-                        val badFile = File(
-                            formDefFile.parentFile,
-                            formDefFile.name + ".bad"
+                parseForms(uriToUpdate.filterNotNull(), { it.file }) { entry, form, error ->
+                    if (form != null) {
+                        formsRepository.save(
+                            Form.Builder(form)
+                                .dbId(entry.id)
+                                .build()
                         )
-                        badFile.delete()
-                        formDefFile.renameTo(badFile)
-                        continue
+                    } else {
+                        markAsBad(entry.file, error!!, errors)
                     }
-                    formsRepository.save(
-                        Form.Builder(form)
-                            .dbId(entry.id)
-                            .build()
-                    )
                 }
                 uriToUpdate.clear()
 
                 // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
-                // This is slow because buildContentValues(...) is slow.
+                // This is slow because parseForm(...) is slow.
                 //
                 Collections.shuffle(formsToAdd) // Big win if multiple DiskSyncTasks running
-                while (!formsToAdd.isEmpty()) {
-                    val formDefFile = formsToAdd.removeAt(0)
-
+                val newFormDefFiles = formsToAdd.filterNotNull().filter { formDefFile ->
                     // Since parsing is so slow, if there are multiple tasks,
                     // they may have already updated the database.
                     // Skip this file if that is the case.
-                    if (formsRepository.getOneByPath(formDefFile!!.absolutePath) != null) {
+                    if (formsRepository.getOneByPath(formDefFile.absolutePath) != null) {
                         Timber.i(
                             "[%d] skipping -- definition already recorded: %s",
                             instance,
                             formDefFile.absolutePath
                         )
-                        continue
+                        false
+                    } else {
+                        true
                     }
+                }
+                formsToAdd.clear()
 
-                    // Parse it for the first time...
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
-                    } catch (e: IllegalArgumentException) {
-                        errors.append(e.message).append("\r\n")
-                        val badFile = File(
-                            formDefFile.parentFile,
-                            formDefFile.name + ".bad"
+                parseForms(newFormDefFiles, { it }) { formDefFile, form, error ->
+                    if (form == null) {
+                        markAsBad(formDefFile, error!!, errors)
+                    } else if (formsRepository.getOneByPath(formDefFile.absolutePath) != null) {
+                        // Another task might have added it while it was being parsed
+                        Timber.i(
+                            "[%d] skipping -- definition already recorded: %s",
+                            instance,
+                            formDefFile.absolutePath
                         )
-                        badFile.delete()
-                        formDefFile.renameTo(badFile)
-                        continue
-                    }
-
-                    // insert into content provider
-                    try {
-                        // insert failures are OK and expected if multiple
-                        // DiskSync scanners are active.
-                        formsRepository.save(form)
-                    } catch (e: SQLException) {
-                        Timber.i("[%d] %s", instance, e.toString())
+                    } else {
+                        // insert into content provider
+                        try {
+                            // insert failures are OK and expected if multiple
+                            // DiskSync scanners are active.
+                            formsRepository.save(form)
+                        } catch (e: SQLException) {
+                            Timber.i("[%d] %s", instance, e.toString())
+                        }
                     }
                 }
             }
@@ -210,6 +207,60 @@ object LocalFormUseCases {
         return !ignoredFile && (xmlFile || xhtmlFile)
     }
 
+    /**
+     * Parses forms on a pool of up to [PARSE_THREADS] threads. [onParsed] is called on the
+     * calling thread for each form (in the order they finish parsing) with either the parsed
+     * [Form] or the reason it couldn't be parsed, so the caller can write the results without
+     * worrying about concurrency.
+     */
+    private fun <T> parseForms(
+        items: List<T>,
+        getFile: (T) -> File,
+        onParsed: (T, Form?, IllegalArgumentException?) -> Unit
+    ) {
+        if (items.isEmpty()) {
+            return
+        }
+
+        val executor = Executors.newFixedThreadPool(PARSE_THREADS.coerceAtMost(items.size))
+        try {
+            val completionService = ExecutorCompletionService<ParseResult<T>>(executor)
+            items.forEach { item ->
+                completionService.submit(
+                    Callable {
+                        try {
+                            ParseResult(item, parseForm(getFile(item)), null)
+                        } catch (e: IllegalArgumentException) {
+                            ParseResult(item, null, e)
+                        }
+                    }
+                )
+            }
+
+            repeat(items.size) {
+                val result = try {
+                    completionService.take().get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+
+                onParsed(result.item, result.form, result.error)
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun markAsBad(formDefFile: File, error: IllegalArgumentException, errors: StringBuilder) {
+        errors.append(error.message).append("\r\n")
+        val badFile = File(
+            formDefFile.parentFile,
+            formDefFile.name + ".bad"
+        )
+        badFile.delete()
+        formDefFile.renameTo(badFile)
+    }
+
     @Throws(IllegalArgumentException::class)
     private fun parseForm(formDefFile: File?): Form {
         // Probably someone overwrite the file on the sdcard
@@ -291,4 +342,6 @@ object LocalFormUseCases {
     }
 
     private class IdFile(val id: Long, val file: File)
+
+    private class ParseResult<T>(val item: T, val form: Form?, val error: IllegalArgumentException?)
 }
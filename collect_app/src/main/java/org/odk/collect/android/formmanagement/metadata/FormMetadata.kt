@@ -9,5 +9,6 @@ data class FormMetadata(
     val autoDelete: String?,
     val autoSend: String?,
     val geometryXPath: String?,
-    val isEntityForm: Boolean
+    val isEntityForm: Boolean,
+    val hasExternalSecondaryInstances: Boolean
 )
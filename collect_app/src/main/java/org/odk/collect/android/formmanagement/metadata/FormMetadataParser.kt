@@ -8,7 +8,7 @@ import java.io.InputStream
 object FormMetadataParser {
     @JvmStatic
     fun readMetadata(formFile: File): FormMetadata {
-        return readMetadata(formFile.inputStream())
+        return formFile.inputStream().use { readMetadata(it) }
     }
 
     @JvmStatic
@@ -32,6 +32,9 @@ object FormMetadataParser {
         val autoSend = submission?.getAttributeValue(null, "auto-send")
         val geometryXPath = getFirstGeopointXPath(model, mainInstanceRoot, body)
         val isEntityForm = model.getAttributeValue(null, "entities-version") != null
+        val hasExternalSecondaryInstances = modelElements
+            .filter { it.name == "instance" && it != mainInstance }
+            .any { it.getAttributeValue(null, "src") != null }
 
         return FormMetadata(
             title,
@@ -42,7 +45,8 @@ object FormMetadataParser {
             autoDelete,
             autoSend,
             geometryXPath,
-            isEntityForm
+            isEntityForm,
+            hasExternalSecondaryInstances
         )
     }
 
@@ -18,6 +18,7 @@ import org.odk.collect.android.application.initialization.ExistingProjectMigrato
 import org.odk.collect.android.audio.AudioRecordingControllerFragment
 import org.odk.collect.android.audio.AudioRecordingErrorDialogFragment
 import org.odk.collect.android.backgroundwork.AutoUpdateTaskSpec
+import org.odk.collect.android.backgroundwork.CacheFormDefsTaskSpec
 import org.odk.collect.android.backgroundwork.SendFormsTaskSpec
 import org.odk.collect.android.backgroundwork.SyncFormsTaskSpec
 import org.odk.collect.android.configure.qr.QRCodeScannerFragment
@@ -182,6 +183,8 @@ interface AppDependencyComponent {
 
     fun inject(autoUpdateTaskSpec: AutoUpdateTaskSpec)
 
+    fun inject(cacheFormDefsTaskSpec: CacheFormDefsTaskSpec)
+
     fun inject(serverAuthDialogFragment: ServerAuthDialogFragment)
 
     fun inject(basePreferencesFragment: BasePreferencesFragment)
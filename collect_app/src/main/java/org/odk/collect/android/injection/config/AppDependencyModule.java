@@ -35,6 +35,7 @@ import org.odk.collect.android.application.initialization.MapsInitializer;
 import org.odk.collect.android.application.initialization.SavepointsImporter;
 import org.odk.collect.android.application.initialization.ScheduledWorkUpgrade;
 import org.odk.collect.android.application.initialization.upgrade.UpgradeInitializer;
+import org.odk.collect.android.backgroundwork.FormDefCacheScheduler;
 import org.odk.collect.android.backgroundwork.FormUpdateAndInstanceSubmitScheduler;
 import org.odk.collect.android.backgroundwork.FormUpdateScheduler;
 import org.odk.collect.android.backgroundwork.InstanceSubmitScheduler;
@@ -250,11 +251,21 @@ public class AppDependencyModule {
         return new AdminPasswordProvider(settingsProvider.getProtectedSettings());
     }
 
+    @Provides
+    public FormUpdateAndInstanceSubmitScheduler providesFormUpdateAndInstanceSubmitScheduler(Scheduler scheduler, SettingsProvider settingsProvider, Application application) {
+        return new FormUpdateAndInstanceSubmitScheduler(scheduler, settingsProvider, application);
+    }
+
     @Provides
     public FormUpdateScheduler providesFormUpdateManger(Scheduler scheduler, SettingsProvider settingsProvider, Application application) {
         return new FormUpdateAndInstanceSubmitScheduler(scheduler, settingsProvider, application);
     }
 
+    @Provides
+    public FormDefCacheScheduler providesFormDefCacheScheduler(FormUpdateAndInstanceSubmitScheduler formUpdateAndInstanceSubmitScheduler) {
+        return formUpdateAndInstanceSubmitScheduler;
+    }
+
     @Provides
     public InstanceSubmitScheduler providesFormSubmitManager(Scheduler scheduler, SettingsProvider settingsProvider, Application application) {
         return new FormUpdateAndInstanceSubmitScheduler(scheduler, settingsProvider, application);
@@ -493,8 +504,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public FormsDataService providesFormsUpdater(Application application, Notifier notifier, ProjectDependencyModuleFactory projectDependencyModuleFactory) {
-        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, System::currentTimeMillis);
+    public FormsDataService providesFormsUpdater(Application application, Notifier notifier, ProjectDependencyModuleFactory projectDependencyModuleFactory, FormDefCacheScheduler formDefCacheScheduler) {
+        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, formDefCacheScheduler, System::currentTimeMillis);
     }
 
     @Provides
@@ -523,7 +534,7 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public UpgradeInitializer providesUpgradeInitializer(Context context, SettingsProvider settingsProvider, ExistingProjectMigrator existingProjectMigrator, ExistingSettingsMigrator existingSettingsMigrator, ScheduledWorkUpgrade scheduledWorkUpgrade, GoogleDriveProjectsDeleter googleDriveProjectsDeleter, ProjectsRepository projectsRepository, ProjectDependencyModuleFactory projectDependencyModuleFactory) {
+    public UpgradeInitializer providesUpgradeInitializer(Context context, SettingsProvider settingsProvider, ExistingProjectMigrator existingProjectMigrator, ExistingSettingsMigrator existingSettingsMigrator, ScheduledWorkUpgrade scheduledWorkUpgrade, GoogleDriveProjectsDeleter googleDriveProjectsDeleter, ProjectsRepository projectsRepository, ProjectDependencyModuleFactory projectDependencyModuleFactory, FormDefCacheScheduler formDefCacheScheduler) {
         return new UpgradeInitializer(
                 context,
                 settingsProvider,
@@ -532,7 +543,7 @@ public class AppDependencyModule {
                 scheduledWorkUpgrade,
                 googleDriveProjectsDeleter,
                 new SavepointsImporter(projectsRepository, projectDependencyModuleFactory),
-                new CachedFormsCleaner(projectsRepository, projectDependencyModuleFactory)
+                new CachedFormsCleaner(projectsRepository, projectDependencyModuleFactory, formDefCacheScheduler)
         );
     }
 
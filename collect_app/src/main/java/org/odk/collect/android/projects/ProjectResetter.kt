@@ -18,6 +18,7 @@ package org.odk.collect.android.projects
 import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter
 import org.odk.collect.android.instancemanagement.InstancesDataService
 import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.android.utilities.WebCredentialsUtils
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.savepoints.SavepointsRepository
@@ -93,6 +94,7 @@ class ProjectResetter(
 
     private fun resetCache() {
         savepointsRepositoryProvider.create(projectId).deleteAll()
+        ExternalizableFormDefCache.clearMemoryCache()
         if (!deleteFolderContent(storagePaths.cacheDir)) {
             failedResetActions.add(ResetAction.RESET_CACHE)
         }
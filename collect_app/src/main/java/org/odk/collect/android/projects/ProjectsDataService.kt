@@ -4,6 +4,7 @@ import kotlinx.coroutines.flow.StateFlow
 import org.odk.collect.android.application.initialization.AnalyticsInitializer
 import org.odk.collect.android.application.initialization.MapsInitializer
 import org.odk.collect.android.state.DataKeys
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidshared.data.DataService
 import org.odk.collect.projects.Project
@@ -56,6 +57,7 @@ class ProjectsDataService(
 
     fun setCurrentProject(projectId: String) {
         settingsProvider.getMetaSettings().save(MetaKeys.CURRENT_PROJECT_ID, projectId)
+        ExternalizableFormDefCache.clearMemoryCache()
 
         analyticsInitializer.initialize()
         mapsInitializer.initialize()
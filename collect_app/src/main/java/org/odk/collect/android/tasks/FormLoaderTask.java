@@ -334,7 +334,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         publishProgress(
                 getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_loading_reading_form_message));
 
-        final FormDef formDefFromCache = new ExternalizableFormDefCache().readCache(formXml);
+        final FormDef formDefFromCache = new ExternalizableFormDefCache().readCache(formXml, form.getMD5Hash());
         if (formDefFromCache != null) {
             return formDefFromCache;
         }
@@ -352,7 +352,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
             formDef = formDefFromXml;
 
             try {
-                new ExternalizableFormDefCache().writeCache(formDef, formXml.getPath());
+                new ExternalizableFormDefCache().writeCache(formDef, formXml.getPath(), form.getMD5Hash());
             } catch (IOException e) {
                 Timber.e(e);
             }
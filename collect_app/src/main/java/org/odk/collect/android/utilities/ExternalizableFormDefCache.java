@@ -7,18 +7,55 @@ import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
 import org.odk.collect.shared.strings.Md5;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import timber.log.Timber;
 
 /** Methods for reading from and writing to the FormDef cache */
 public final class ExternalizableFormDefCache implements FormDefCache {
 
+    /**
+     * Shared between instances so that forms read repeatedly (like when bulk finalizing drafts)
+     * don't need to be read from disk each time.
+     */
+    private static final FormDefMemoryCache MEMORY_CACHE = new FormDefMemoryCache(FormDefMemoryCache.getDefaultMaxSize());
+
+    /**
+     * Frees up memory used by the in-memory tier of the cache. Should be called from
+     * {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void onTrimMemory(int level) {
+        MEMORY_CACHE.trimMemory(level);
+    }
+
+    private final String cacheDirPath;
+
+    /**
+     * Uses the cache directory of the current project.
+     */
+    public ExternalizableFormDefCache() {
+        this(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE));
+    }
+
+    public ExternalizableFormDefCache(String cacheDirPath) {
+        this.cacheDirPath = cacheDirPath;
+    }
+
+    /**
+     * Removes all forms from the in-memory tier of the cache. Should be called whenever cache
+     * files are deleted or the current project changes.
+     */
+    public static void clearMemoryCache() {
+        MEMORY_CACHE.clear();
+    }
+
     /**
      * Serializes a FormDef and saves it in the cache. To avoid problems from two callers
      * trying to cache the same file at the same time, we serialize into a temporary file,
@@ -29,18 +66,34 @@ public final class ExternalizableFormDefCache implements FormDefCache {
      */
     @Override
     public void writeCache(FormDef formDef, String formPath) throws IOException {
+        writeCache(formDef, formPath, null);
+    }
+
+    /**
+     * Like {@link #writeCache(FormDef, String)}, but uses a previously calculated hash of the
+     * form XML (like the one stored for a {@link org.odk.collect.forms.Form}).
+     */
+    @Override
+    public void writeCache(FormDef formDef, String formPath, String md5Hash) throws IOException {
         final long formSaveStart = System.currentTimeMillis();
-        File cachedFormDefFile = ExternalizableFormDefCache.getCacheFile(new File(formPath));
-        final File tempCacheFile = File.createTempFile("cache", null,
-                new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE)));
+        File formXml = new File(formPath);
+        File cachedFormDefFile = getCacheFile(md5Hash != null ? md5Hash : Md5.getMd5Hash(formXml));
+        final File tempCacheFile = File.createTempFile("cache", null, new File(cacheDirPath));
         Timber.i("Started saving %s to the cache via temp file %s",
                 formDef.getTitle(), tempCacheFile.getName());
 
         Exception caughtException = null;
+        byte[] serializedFormDef = null;
         try {
-            DataOutputStream dos = new DataOutputStream(new FileOutputStream(tempCacheFile));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bytes);
             formDef.writeExternal(dos);
             dos.close();
+
+            serializedFormDef = bytes.toByteArray();
+            try (FileOutputStream fos = new FileOutputStream(tempCacheFile)) {
+                fos.write(FormDefCacheFormat.encode(serializedFormDef, formXml.length(), formXml.lastModified()));
+            }
         } catch (IOException exception) {
             caughtException = exception;
         }
@@ -56,6 +109,7 @@ public final class ExternalizableFormDefCache implements FormDefCache {
             }
         } else {
             if (tempCacheFile.renameTo(cachedFormDefFile)) {
+                MEMORY_CACHE.put(getMemoryCacheKey(cachedFormDefFile, formXml), serializedFormDef);
                 Timber.i("Renamed %s to %s",
                         tempCacheFile.getName(), cachedFormDefFile.getName());
                 Timber.i("Caching %s took %.3f seconds.", formDef.getTitle(),
@@ -77,14 +131,60 @@ public final class ExternalizableFormDefCache implements FormDefCache {
      */
     @Override
     public FormDef readCache(File formXml) {
-        final File cachedForm = getCacheFile(formXml);
+        return readCache(formXml, getCacheFile(Md5.getMd5Hash(formXml)), true);
+    }
+
+    /**
+     * Like {@link #readCache(File)}, but uses a previously calculated hash of the form XML (like
+     * the one stored for a {@link org.odk.collect.forms.Form}) to avoid reading the whole XML.
+     * As the hash might be out of date, the cached form is only used if the XML's length and
+     * last modified time match the ones it was cached with. Otherwise, this falls back to
+     * hashing the XML.
+     */
+    @Override
+    public FormDef readCache(File formXml, String md5Hash) {
+        if (md5Hash != null) {
+            FormDef formDef = readCache(formXml, getCacheFile(md5Hash), false);
+            if (formDef != null) {
+                return formDef;
+            }
+        }
+
+        return readCache(formXml);
+    }
+
+    /**
+     * @param verified whether the cache file is known to be for the current contents of
+     *                 {@code formXml} (because its name was calculated from a fresh hash)
+     */
+    private FormDef readCache(File formXml, File cachedForm, boolean verified) {
+        String memoryCacheKey = getMemoryCacheKey(cachedForm, formXml);
+        byte[] serializedFormDef = MEMORY_CACHE.get(memoryCacheKey);
+        if (serializedFormDef != null) {
+            try {
+                return deserializeFormDef(serializedFormDef);
+            } catch (Exception e) {
+                Timber.w(e, "Deserialization from memory FAILED!");
+                MEMORY_CACHE.remove(memoryCacheKey);
+            }
+        }
+
         if (cachedForm.exists()) {
             Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
             final long start = System.currentTimeMillis();
 
             try {
-                final FormDef deserializedFormDef = deserializeFormDef(cachedForm);
+                FormDefCacheFormat.Decoded decoded = FormDefCacheFormat.decode(Files.readAllBytes(cachedForm.toPath()));
+                boolean sourceMatches = decoded.getSourceLength() == formXml.length()
+                        && decoded.getSourceLastModified() == formXml.lastModified();
+                if (!verified && !sourceMatches) {
+                    return null;
+                }
+
+                serializedFormDef = decoded.getSerializedFormDef();
+                final FormDef deserializedFormDef = deserializeFormDef(serializedFormDef);
                 if (deserializedFormDef != null) {
+                    MEMORY_CACHE.put(memoryCacheKey, serializedFormDef);
                     Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
                     return deserializedFormDef;
                 }
@@ -98,19 +198,32 @@ public final class ExternalizableFormDefCache implements FormDefCache {
         return null;
     }
 
+    @Override
+    public boolean isCached(String md5Hash) {
+        return getCacheFile(md5Hash).exists();
+    }
+
     /**
      * Builds and returns a File object for the cached version of a form.
-     * @param formXml the File containing the XML form
+     * @param md5Hash the hash of the File containing the XML form
      * @return a File object
      */
-    private static File getCacheFile(File formXml) {
-        return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE) + File.separator +
-                Md5.getMd5Hash(formXml) + ".formdef");
+    private File getCacheFile(String md5Hash) {
+        return new File(cacheDirPath + File.separator + md5Hash + ".formdef");
+    }
+
+    /**
+     * Forms in memory are keyed by the XML's length and last modified time as well as the cache
+     * file's path (which includes the hash) so they can be validated the same way as cache files
+     * and aren't shared between projects.
+     */
+    private static String getMemoryCacheKey(File cachedForm, File formXml) {
+        return cachedForm.getAbsolutePath() + ":" + formXml.length() + ":" + formXml.lastModified();
     }
 
-    private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
+    private static FormDef deserializeFormDef(byte[] serializedFormDef) throws Exception {
         FormDef fd;
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(serializedFormDef))) {
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(serializedFormDef))) {
             fd = new FormDef();
             fd.readExternal(dis, ExtUtil.defaultPrototypes());
         }
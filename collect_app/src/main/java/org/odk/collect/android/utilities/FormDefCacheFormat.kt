@@ -0,0 +1,150 @@
+package org.odk.collect.android.utilities
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+
+/**
+ * Container format for `.formdef` cache files. A header identifying the format, its version, the
+ * length and last modified time of the form XML it was created from and the length and checksum
+ * of the serialized [org.javarosa.core.model.FormDef] is followed by the (optionally Deflate
+ * compressed) serialized form:
+ *
+ * ```
+ * int magic ("JRFD")
+ * int format version
+ * long source length
+ * long source last modified
+ * byte flags
+ * int serialized length
+ * long serialized CRC32
+ * int payload length
+ * byte[] payload
+ * ```
+ *
+ * Files in any other format (or version of this one) are rejected rather than migrated: all
+ * `.formdef` files are deleted when the app is upgraded (see
+ * [org.odk.collect.android.application.initialization.CachedFormsCleaner]) so they can only be
+ * left by a crash part way through the cleanup, in which case recreating them from the XML is
+ * fine.
+ */
+object FormDefCacheFormat {
+
+    const val VERSION = 1
+
+    private const val MAGIC = 0x4A524644
+    private const val FLAG_DEFLATE = 1
+    private const val HEADER_SIZE = 4 + 4 + 8 + 8 + 1 + 4 + 8 + 4
+    private const val BUFFER_SIZE = 16 * 1024
+
+    @JvmStatic
+    @JvmOverloads
+    fun encode(
+        serializedFormDef: ByteArray,
+        sourceLength: Long,
+        sourceLastModified: Long,
+        compress: Boolean = true
+    ): ByteArray {
+        val payload = if (compress) deflate(serializedFormDef) else serializedFormDef
+        val checksum = CRC32().also { it.update(serializedFormDef) }.value
+
+        val bytes = ByteArrayOutputStream(payload.size + HEADER_SIZE)
+        DataOutputStream(bytes).use {
+            it.writeInt(MAGIC)
+            it.writeInt(VERSION)
+            it.writeLong(sourceLength)
+            it.writeLong(sourceLastModified)
+            it.writeByte(if (compress) FLAG_DEFLATE else 0)
+            it.writeInt(serializedFormDef.size)
+            it.writeLong(checksum)
+            it.writeInt(payload.size)
+            it.write(payload)
+        }
+
+        return bytes.toByteArray()
+    }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun decode(bytes: ByteArray): Decoded {
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        if (bytes.size < HEADER_SIZE || input.readInt() != MAGIC) {
+            throw IOException("Not a formdef cache file")
+        }
+
+        val version = input.readInt()
+        if (version != VERSION) {
+            throw IOException("Unsupported formdef cache format version: $version")
+        }
+
+        val sourceLength = input.readLong()
+        val sourceLastModified = input.readLong()
+
+        val flags = input.readByte().toInt()
+        val serializedLength = input.readInt()
+        val checksum = input.readLong()
+        val payloadLength = input.readInt()
+        if (serializedLength < 0 || payloadLength < 0 || payloadLength > bytes.size - HEADER_SIZE) {
+            throw IOException("Corrupt formdef cache file")
+        }
+
+        val payload = ByteArray(payloadLength)
+        input.readFully(payload)
+
+        val serializedFormDef = if (flags and FLAG_DEFLATE != 0) {
+            inflate(payload, serializedLength)
+        } else {
+            payload
+        }
+
+        if (serializedFormDef.size != serializedLength ||
+            CRC32().also { it.update(serializedFormDef) }.value != checksum
+        ) {
+            throw IOException("Corrupt formdef cache file")
+        }
+
+        return Decoded(serializedFormDef, sourceLength, sourceLastModified)
+    }
+
+    private fun deflate(bytes: ByteArray): ByteArray {
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            val output = ByteArrayOutputStream(bytes.size / 2)
+            DeflaterOutputStream(output, deflater, BUFFER_SIZE).use { it.write(bytes) }
+            return output.toByteArray()
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private fun inflate(bytes: ByteArray, length: Int): ByteArray {
+        val inflater = Inflater()
+        try {
+            val serializedFormDef = ByteArray(length)
+            DataInputStream(
+                InflaterInputStream(ByteArrayInputStream(bytes), inflater, BUFFER_SIZE)
+            ).use { it.readFully(serializedFormDef) }
+
+            return serializedFormDef
+        } finally {
+            inflater.end()
+        }
+    }
+
+    /**
+     * @param sourceLength the length of the form XML the file was created from
+     * @param sourceLastModified the last modified time of the form XML the file was created from
+     */
+    class Decoded(
+        val serializedFormDef: ByteArray,
+        val sourceLength: Long,
+        val sourceLastModified: Long
+    )
+}
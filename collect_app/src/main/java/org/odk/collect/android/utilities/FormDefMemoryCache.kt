@@ -0,0 +1,65 @@
+package org.odk.collect.android.utilities
+
+import android.content.ComponentCallbacks2
+import android.util.LruCache
+
+/**
+ * In-memory tier for serialized [org.javarosa.core.model.FormDef] instances. Serialized bytes are
+ * stored rather than [org.javarosa.core.model.FormDef] objects as these are mutable: each read
+ * gets its own copy by deserializing from memory. This only saves reading (and decompressing)
+ * the cache file - the form still needs to be deserialized.
+ *
+ * The cache is bounded by the total size (in bytes) of the serialized forms and least recently
+ * used forms are evicted first.
+ */
+class FormDefMemoryCache(maxSize: Int) {
+
+    private val cache = object : LruCache<String, ByteArray>(maxSize) {
+        override fun sizeOf(key: String, value: ByteArray): Int {
+            return value.size
+        }
+    }
+
+    fun get(key: String): ByteArray? {
+        return cache.get(key)
+    }
+
+    fun put(key: String, serializedFormDef: ByteArray) {
+        cache.put(key, serializedFormDef)
+    }
+
+    fun remove(key: String) {
+        cache.remove(key)
+    }
+
+    fun size(): Int {
+        return cache.size()
+    }
+
+    fun clear() {
+        cache.evictAll()
+    }
+
+    /**
+     * Frees up memory in response to [ComponentCallbacks2.onTrimMemory].
+     */
+    fun trimMemory(level: Int) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll()
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2)
+        }
+    }
+
+    companion object {
+
+        /**
+         * A sixteenth of the app's max heap, which leaves room for the forms being deserialized
+         * from the cache.
+         */
+        @JvmStatic
+        fun getDefaultMaxSize(): Int {
+            return (Runtime.getRuntime().maxMemory() / 16).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+        }
+    }
+}
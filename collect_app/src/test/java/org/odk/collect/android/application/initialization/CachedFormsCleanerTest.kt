@@ -9,6 +9,9 @@ import org.hamcrest.Matchers.containsInAnyOrder
 import org.hamcrest.Matchers.equalTo
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+import org.odk.collect.android.backgroundwork.FormDefCacheScheduler
 import org.odk.collect.android.injection.DaggerUtils
 import org.odk.collect.projects.Project
 import java.io.File
@@ -19,7 +22,9 @@ class CachedFormsCleanerTest {
     private val projectsRepository = component.projectsRepository()
     private val projectDependencyModuleFactory = component.projectDependencyModuleFactory()
 
-    private val cachedFormsCleaner = CachedFormsCleaner(projectsRepository, projectDependencyModuleFactory)
+    private val formDefCacheScheduler = mock<FormDefCacheScheduler>()
+
+    private val cachedFormsCleaner = CachedFormsCleaner(projectsRepository, projectDependencyModuleFactory, formDefCacheScheduler)
 
     @Test
     fun `cleaner should be run on every app upgrade`() {
@@ -55,4 +60,15 @@ class CachedFormsCleanerTest {
         assertThat(cachedFilesProject2.size, equalTo(2))
         assertThat(cachedFilesProject2.map { it.name }.toList(), containsInAnyOrder("file3.save", "file4.txt"))
     }
+
+    @Test
+    fun `forms are cached again in the background for every project after cleaning`() {
+        projectsRepository.save(Project.Saved("1", "Project 1", "1", "#000000"))
+        projectsRepository.save(Project.Saved("2", "Project 2", "2", "#000000"))
+
+        cachedFormsCleaner.run()
+
+        verify(formDefCacheScheduler).scheduleCaching("1")
+        verify(formDefCacheScheduler).scheduleCaching("2")
+    }
 }
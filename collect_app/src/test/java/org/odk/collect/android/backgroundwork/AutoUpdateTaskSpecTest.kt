@@ -29,7 +29,8 @@ class AutoUpdateTaskSpecTest {
             override fun providesFormsUpdater(
                 application: Application,
                 notifier: Notifier,
-                projectDependencyModuleFactory: ProjectDependencyModuleFactory
+                projectDependencyModuleFactory: ProjectDependencyModuleFactory,
+                formDefCacheScheduler: FormDefCacheScheduler
             ): FormsDataService {
                 return formUpdateChecker
             }
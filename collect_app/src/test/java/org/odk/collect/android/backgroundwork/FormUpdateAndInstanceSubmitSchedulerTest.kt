@@ -138,6 +138,18 @@ class FormUpdateAndInstanceSubmitSchedulerTest {
         verifyNoInteractions(scheduler)
     }
 
+    @Test
+    fun `scheduleCaching schedules caching task without network constraint`() {
+        val manager = FormUpdateAndInstanceSubmitScheduler(scheduler, settingsProvider, application)
+
+        manager.scheduleCaching("myProject")
+        verify(scheduler).deferred(
+            eq("cache_form_defs:myProject"),
+            any<CacheFormDefsTaskSpec>(),
+            eq(mapOf(TaskData.DATA_PROJECT_ID to "myProject"))
+        )
+    }
+
     @Test
     fun `cancelSubmit cancels auto send for current project`() {
         val manager = FormUpdateAndInstanceSubmitScheduler(scheduler, settingsProvider, application)
@@ -33,7 +33,8 @@ class SyncFormsTaskSpecTest {
             override fun providesFormsUpdater(
                 application: Application,
                 notifier: Notifier,
-                projectDependencyModuleFactory: ProjectDependencyModuleFactory
+                projectDependencyModuleFactory: ProjectDependencyModuleFactory,
+                formDefCacheScheduler: FormDefCacheScheduler
             ): FormsDataService {
                 return formsDataService
             }
@@ -70,6 +70,30 @@ class EntitiesDatabaseMigratorTest {
         assertThat(lists[0]["last_updated"], equalTo(null))
     }
 
+    @Test
+    fun `#onUpgrade from version 4`() {
+        val db = SQLiteDatabase.create(null)
+        val migrator = EntitiesDatabaseMigrator(DATABASE_VERSION)
+        migrator.createDbForVersion(db, 4)
+
+        val listContentValues = ContentValues().also {
+            it.put("name", "blah")
+            it.put("hash", "somehash")
+            it.put("needs_approval", 0)
+        }
+        db.insert("lists", null, listContentValues)
+        db.execSQL("CREATE TABLE blah (_id integer PRIMARY KEY, id text, state integer NOT NULL);")
+        db.execSQL("INSERT INTO blah (id, state) VALUES ('1', 1);")
+
+        migrator.onUpgrade(db, 4)
+        val entities = db.query("blah").foldAndClose { it.rowToMap() }
+        assertThat(entities.size, equalTo(1))
+        assertThat(entities[0]["id"], equalTo("1"))
+
+        assertThat(entities[0].containsKey("server_digest"), equalTo(true))
+        assertThat(entities[0]["server_digest"], equalTo(null))
+    }
+
     companion object {
         const val DATABASE_VERSION = 3
     }
@@ -1,6 +1,7 @@
 package org.odk.collect.android.dynamicpreload
 
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
 import org.hamcrest.Matchers.instanceOf
 import org.javarosa.core.util.externalizable.ExtUtil
 import org.junit.Test
@@ -17,4 +18,17 @@ class DynamicPreloadExtraTest {
 
         assertThat(deserialized, instanceOf(DynamicPreloadExtra::class.java))
     }
+
+    @Test
+    fun `can be externalized with lookup columns`() {
+        val extra = DynamicPreloadExtra(
+            mapOf("fruits" to setOf("id", "color"), "vegetables" to setOf("code"))
+        )
+
+        val external = ExtUtil.serialize(extra)
+        val deserialized =
+            ExtUtil.deserialize(external, DynamicPreloadExtra::class.java) as DynamicPreloadExtra
+
+        assertThat(deserialized.lookupColumns, equalTo(extra.lookupColumns))
+    }
 }
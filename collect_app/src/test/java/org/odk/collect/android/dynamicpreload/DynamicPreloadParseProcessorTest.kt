@@ -6,6 +6,7 @@ import org.hamcrest.Matchers.instanceOf
 import org.javarosa.core.model.FormDef
 import org.javarosa.core.model.QuestionDef
 import org.javarosa.xpath.expr.XPathExpression
+import org.javarosa.xpath.parser.XPathParseTool
 import org.junit.Test
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
@@ -62,6 +63,35 @@ class DynamicPreloadParseProcessorTest {
         )
     }
 
+    @Test
+    fun `DynamicPreloadExtra contains reference columns used by pulldata`() {
+        val formDef = FormDef()
+
+        processor.processXPath(XPathParseTool.parseXPath("pulldata('Fruits.csv', 'name', 'id', /data/fruit)"))
+        processor.processXPath(
+            XPathParseTool.parseXPath("concat('Fruit: ', pulldata('fruits', 'name', 'code', /data/code))")
+        )
+        processor.processXPath(XPathParseTool.parseXPath("pulldata('fruits', 'name', /data/column, 'x')"))
+        processor.processFormDef(formDef)
+        assertThat(
+            formDef.extras.get(DynamicPreloadExtra::class.java).lookupColumns,
+            equalTo(mapOf("fruits" to setOf("id", "code")))
+        )
+    }
+
+    @Test
+    fun `DynamicPreloadExtra contains filter columns used by search`() {
+        val formDef = FormDef()
+
+        processor.processQuestion(createQuestion(appearance = "search('fruits', 'matches', 'name', 'mango', 'color', 'red')"))
+        processor.processQuestion(createQuestion(appearance = "search('vegetables', 'matches', 'name', 'kale')"))
+        processor.processFormDef(formDef)
+        assertThat(
+            formDef.extras.get(DynamicPreloadExtra::class.java).lookupColumns,
+            equalTo(mapOf("fruits" to setOf("color")))
+        )
+    }
+
     private fun createNonPullDataExpression() = mock<XPathExpression> {
         on { containsFunc("pulldata") } doReturn false
     }
@@ -0,0 +1,29 @@
+package org.odk.collect.android.dynamicpreload
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+import org.odk.collect.shared.TempFiles
+
+class ExternalDataManagerImplTest {
+
+    private val externalDataManager = ExternalDataManagerImpl(TempFiles.createTempDir())
+
+    @Test
+    fun `#getPullDataResult returns result put for the same arguments`() {
+        externalDataManager.putPullDataResult("fruits", "name", "name_key", "mango", "Mango")
+
+        assertThat(externalDataManager.getPullDataResult("fruits", "name", "name_key", "mango"), equalTo("Mango"))
+        assertThat(externalDataManager.getPullDataResult("fruits", "name", "name_key", "oranges"), nullValue())
+        assertThat(externalDataManager.getPullDataResult("fruits", "color", "name_key", "mango"), nullValue())
+    }
+
+    @Test
+    fun `#close clears pulldata results`() {
+        externalDataManager.putPullDataResult("fruits", "name", "name_key", "mango", "Mango")
+        externalDataManager.close()
+
+        assertThat(externalDataManager.getPullDataResult("fruits", "name", "name_key", "mango"), nullValue())
+    }
+}
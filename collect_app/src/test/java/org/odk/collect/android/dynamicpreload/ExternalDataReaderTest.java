@@ -25,8 +25,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
@@ -35,6 +39,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.odk.collect.android.dynamicpreload.ExternalDataUtil.COLUMN_DATASET_FILENAME;
 import static org.odk.collect.android.dynamicpreload.ExternalDataUtil.COLUMN_MD5_HASH;
+import static org.odk.collect.android.dynamicpreload.ExternalDataUtil.EXTERNAL_DATA_FTS_TABLE_NAME;
 import static org.odk.collect.android.dynamicpreload.ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME;
 import static org.odk.collect.android.dynamicpreload.ExternalDataUtil.EXTERNAL_METADATA_TABLE_NAME;
 
@@ -190,6 +195,121 @@ public class ExternalDataReaderTest {
         assertThat(metadataTableHash, is(newHash));
     }
 
+    @Test
+    public void doImport_whenFileIsUpdated_onlyAppliesChangedRows() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+        Map<String, Long> originalRowIds = getRowIdsByKey();
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name\nmango,Mango\noranges,Blood oranges\ncherimoya,Cherimoya");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        Map<String, Long> rowIds = getRowIdsByKey();
+        assertThat(rowIds.keySet(), is(new HashSet<>(Arrays.asList("mango", "oranges", "cherimoya"))));
+        assertThat(rowIds.get("mango"), is(originalRowIds.get("mango")));
+        assertThat(rowIds.get("oranges"), is(originalRowIds.get("oranges")));
+        assertThat(getIndexNames(), is(Collections.singleton("name_key_idx")));
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = db.rawQuery("SELECT c_name, " + ExternalDataUtil.SORT_COLUMN_NAME + " FROM " + EXTERNAL_DATA_TABLE_NAME
+                + " WHERE c_name_key = 'oranges'", null);
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("Blood oranges"));
+        assertThat(cursor.getDouble(1), is(2.0));
+        cursor.close();
+
+        assertThat(ExternalSQLiteOpenHelper.getLastMd5Hash(db, EXTERNAL_METADATA_TABLE_NAME, csvFile), is(Md5.getMd5Hash(csvFile)));
+        db.close();
+    }
+
+    @Test
+    public void doImport_whenFileIsUpdated_keepsFullTextIndexInSync() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name\nmango,Mango\noranges,Blood oranges\ncherimoya,Cherimoya");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        assertThat(getFullTextMatches("\"blood*\""), is(Collections.singleton("oranges")));
+        assertThat(getFullTextMatches("\"cherimoya*\""), is(Collections.singleton("cherimoya")));
+        assertThat(getFullTextMatches("\"strawberries*\""), is(Collections.emptySet()));
+    }
+
+    @Test
+    public void doImport_whenRowIsRemovedFromFile_updatesSortValuesOfLaterRows() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+        Map<String, Long> originalRowIds = getRowIdsByKey();
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name\noranges,Oranges\nstrawberries,Strawberries");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        assertThat(getRowIdsByKey().get("strawberries"), is(originalRowIds.get("strawberries")));
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = db.rawQuery("SELECT c_name_key FROM " + EXTERNAL_DATA_TABLE_NAME + " ORDER BY " + ExternalDataUtil.SORT_COLUMN_NAME, null);
+        assertThat(cursor.getCount(), is(2));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("oranges"));
+        cursor.moveToNext();
+        assertThat(cursor.getString(0), is("strawberries"));
+        cursor.close();
+        db.close();
+
+        assertThat(getFullTextMatches("\"strawberries*\""), is(Collections.singleton("strawberries")));
+        assertThat(getFullTextMatches("\"mango*\""), is(Collections.emptySet()));
+    }
+
+    @Test
+    public void doImport_whenFileIsUpdatedWithDifferentColumns_reimportsCsv() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name,color\nmango,Mango,orange");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = db.rawQuery("SELECT c_color FROM " + EXTERNAL_DATA_TABLE_NAME, null);
+        assertThat(cursor.getCount(), is(1));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("orange"));
+        cursor.close();
+        db.close();
+    }
+
+    @Test
+    public void doImport_whenFileIsUpdatedWithDuplicateKeys_reimportsCsv() throws IOException {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile))) {
+            out.write("name_key,name\nmango,Mango\nmango,Green mango");
+        }
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(db.rawQuery(SELECT_ALL_DATA_QUERY, null).getCount(), is(2));
+        db.close();
+    }
+
     @Test
     public void doImport_skipsImportIfFileNotUpdated() {
         // Create the DB file with an initial import
@@ -215,6 +335,110 @@ public class ExternalDataReaderTest {
         assertThat("expected zero rows of data after reimporting unchanged file", cursor.getCount(), is(0));
     }
 
+    @Test
+    public void doImport_importsValuesForEachRowInOrder() throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(csvFile, true))) {
+            out.write("\ncherimoya");
+        }
+
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = db.rawQuery("SELECT c_name_key, c_name, " + ExternalDataUtil.SORT_COLUMN_NAME + " FROM " + EXTERNAL_DATA_TABLE_NAME + " ORDER BY " + ExternalDataUtil.SORT_COLUMN_NAME, null);
+        assertThat(cursor.getCount(), is(4));
+
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("mango"));
+        assertThat(cursor.getString(1), is("Mango"));
+        assertThat(cursor.getDouble(2), is(1.0));
+
+        cursor.moveToLast();
+        assertThat(cursor.getString(0), is("cherimoya"));
+        assertThat(cursor.getString(1), is(""));
+        assertThat(cursor.getDouble(2), is(4.0));
+        cursor.close();
+        db.close();
+    }
+
+    @Test
+    public void doImport_createsFullTextIndexOverDataColumns() {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        assertThat(SQLiteUtils.doesTableExist(db, EXTERNAL_DATA_FTS_TABLE_NAME), is(true));
+
+        Cursor cursor = db.rawQuery("SELECT c_name FROM " + EXTERNAL_DATA_TABLE_NAME + " WHERE rowid IN (SELECT docid FROM "
+                + EXTERNAL_DATA_FTS_TABLE_NAME + " WHERE " + EXTERNAL_DATA_FTS_TABLE_NAME + " MATCH ?)", new String[]{"\"straw*\""});
+        assertThat(cursor.getCount(), is(1));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("Strawberries"));
+        cursor.close();
+        db.close();
+    }
+
+    @Test
+    public void doImport_indexesLookupColumnsThatExistInDataSet() {
+        Set<String> lookupColumns = new HashSet<>();
+        lookupColumns.add("name");
+        lookupColumns.add("missing");
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock(),
+                Collections.singletonMap(SIMPLE_SEARCH_EXTERNAL_CSV_NAME, lookupColumns));
+        externalDataReader.doImport(formDefToCsvMedia);
+
+        assertThat(getIndexNames(), is(new HashSet<>(Arrays.asList("name_key_idx", "c_name_lookup_idx"))));
+    }
+
+    @Test
+    public void doImport_indexesLookupColumnsWhenImportIsSkipped() {
+        ExternalDataReader externalDataReader = new ExternalDataReaderImpl(() -> false, mock());
+        externalDataReader.doImport(formDefToCsvMedia);
+        assertThat(getIndexNames(), is(Collections.singleton("name_key_idx")));
+
+        externalDataReader = new ExternalDataReaderImpl(() -> false, mock(),
+                Collections.singletonMap(SIMPLE_SEARCH_EXTERNAL_CSV_NAME, Collections.singleton("name")));
+        externalDataReader.doImport(formDefToCsvMedia);
+        assertThat(getIndexNames(), is(new HashSet<>(Arrays.asList("name_key_idx", "c_name_lookup_idx"))));
+    }
+
+    private static Map<String, Long> getRowIdsByKey() {
+        Map<String, Long> rowIds = new HashMap<>();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT c_name_key, rowid FROM " + EXTERNAL_DATA_TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                rowIds.put(cursor.getString(0), cursor.getLong(1));
+            }
+        }
+        db.close();
+        return rowIds;
+    }
+
+    private static Set<String> getFullTextMatches(String matchArgument) {
+        Set<String> keys = new HashSet<>();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT c_name_key FROM " + EXTERNAL_DATA_FTS_TABLE_NAME + " WHERE "
+                + EXTERNAL_DATA_FTS_TABLE_NAME + " MATCH ?", new String[]{matchArgument})) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+        db.close();
+        return keys;
+    }
+
+    private static Set<String> getIndexNames() {
+        Set<String> indexNames = new HashSet<>();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?", new String[]{EXTERNAL_DATA_TABLE_NAME})) {
+            while (cursor.moveToNext()) {
+                indexNames.add(cursor.getString(0));
+            }
+        }
+        db.close();
+        return indexNames;
+    }
+
     private static Map<String, File> makeExternalDataMap() {
         Map<String, File> externalDataMap = new HashMap<>();
         externalDataMap.put(SIMPLE_SEARCH_EXTERNAL_CSV_NAME, csvFile);
@@ -0,0 +1,27 @@
+package org.odk.collect.android.dynamicpreload.handler
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+import org.odk.collect.android.dynamicpreload.ExternalDataManager
+
+class ExternalDataHandlerPullTest {
+
+    @Test
+    fun `eval returns cached result without querying the data set`() {
+        val externalDataManager = mock<ExternalDataManager> {
+            on { getPullDataResult("fruits", "name", "name_key", "mango") } doReturn "Mango"
+        }
+
+        val handler = ExternalDataHandlerPull(externalDataManager)
+        val result = handler.eval(arrayOf<Any>("Fruits.csv", "name", "name_key", "mango"), mock())
+
+        assertThat(result, equalTo("Mango"))
+        verify(externalDataManager, never()).getDatabase(any(), any())
+    }
+}
@@ -0,0 +1,35 @@
+package org.odk.collect.android.dynamicpreload.handler
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+
+class ExternalDataSearchTypeTest {
+
+    @Test
+    fun `constructMatchArgument matches each token as a prefix for startsWith and matches`() {
+        assertThat(ExternalDataSearchType.STARTS.constructMatchArgument("red ap"), equalTo("\"red*\" \"ap*\""))
+        assertThat(ExternalDataSearchType.MATCHES.constructMatchArgument("Mango"), equalTo("\"Mango*\""))
+    }
+
+    @Test
+    fun `constructMatchArgument skips the first token for contains and endsWith`() {
+        assertThat(ExternalDataSearchType.CONTAINS.constructMatchArgument("ed appl"), equalTo("\"appl*\""))
+        assertThat(ExternalDataSearchType.ENDS.constructMatchArgument("ed apple"), equalTo("\"apple*\""))
+        assertThat(ExternalDataSearchType.CONTAINS.constructMatchArgument("an"), nullValue())
+    }
+
+    @Test
+    fun `constructMatchArgument keeps the first token for contains when the value starts with a separator`() {
+        assertThat(ExternalDataSearchType.CONTAINS.constructMatchArgument(" apple"), equalTo("\"apple*\""))
+    }
+
+    @Test
+    fun `constructMatchArgument returns null when the value has no tokens or contains LIKE wildcards`() {
+        assertThat(ExternalDataSearchType.STARTS.constructMatchArgument(""), nullValue())
+        assertThat(ExternalDataSearchType.STARTS.constructMatchArgument(" - "), nullValue())
+        assertThat(ExternalDataSearchType.STARTS.constructMatchArgument("a%c"), nullValue())
+        assertThat(ExternalDataSearchType.STARTS.constructMatchArgument("a_c"), nullValue())
+    }
+}
@@ -3,13 +3,19 @@ package org.odk.collect.android.entities
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
 import org.odk.collect.android.entities.support.EntitySameAsMatcher.Companion.sameEntityAs
+import org.odk.collect.db.sqlite.DatabaseConnection
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
+import org.odk.collect.shared.Query
 import org.odk.collect.shared.TempFiles
+import java.io.File
+import java.util.concurrent.Executor
 
 @RunWith(AndroidJUnit4::class)
 class DatabaseEntitiesRepositoryTest : EntitiesRepositoryTest() {
@@ -37,4 +43,95 @@ class DatabaseEntitiesRepositoryTest : EntitiesRepositoryTest() {
         repository.save("things", savedEntity)
         assertThat(repository.query("things")[0], sameEntityAs(savedEntity))
     }
+
+    @Test
+    fun `lists and properties added by one repository can be used by another for the same database`() {
+        val dbPath = TempFiles.createTempDir().absolutePath
+        val repository1 = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath) { 0 }
+        val repository2 = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath) { 0 }
+
+        val leoville = Entity.New("1", "Léoville Barton 2008")
+        repository1.save("wines", leoville)
+        assertThat(repository2.query("wines"), contains(sameEntityAs(leoville)))
+
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("vintage" to "2014"))
+        repository2.save("wines", canet)
+        val leovilleWithVintage = leoville.copy(properties = listOf("vintage" to "2008"))
+        repository1.save("wines", leovilleWithVintage)
+
+        assertThat(
+            repository1.query("wines"),
+            contains(sameEntityAs(leovilleWithVintage), sameEntityAs(canet))
+        )
+    }
+
+    @Test
+    fun `#query returns matching entities after repeated queries on the same property`() {
+        val repository = buildSubject()
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("vintage" to "2008"))
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("vintage" to "2014"))
+        repository.save("wines", leoville, canet)
+
+        repeat(5) {
+            assertThat(
+                repository.query("wines", Query.StringEq("vintage", "2008")),
+                contains(sameEntityAs(leoville))
+            )
+
+            assertThat(
+                repository.query("wines", Query.NumericGt("vintage", 2010.0)),
+                contains(sameEntityAs(canet))
+            )
+        }
+
+        repository.cleanUpProperties("wines", setOf("vintage"))
+        repeat(5) {
+            assertThat(
+                repository.query("wines", Query.StringEq("vintage", "2008")),
+                contains(sameEntityAs(leoville))
+            )
+        }
+    }
+
+    @Test
+    fun `#query creates indexes in the background once a property has been queried repeatedly for the database`() {
+        val dbPath = TempFiles.createTempDir().absolutePath
+        val indexTasks = mutableListOf<Runnable>()
+        val indexExecutor = Executor { indexTasks.add(it) }
+        val repository1 = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath, { 0 }, indexExecutor)
+        val repository2 = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath, { 0 }, indexExecutor)
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("vintage" to "2008"))
+        repository1.save("wines", leoville)
+
+        repository1.query("wines", Query.StringEq("vintage", "2008"))
+        repository2.query("wines", Query.StringEq("vintage", "2008"))
+        assertThat(indexTasks.size, equalTo(0))
+
+        repository2.query("wines", Query.StringEq("vintage", "2008"))
+        assertThat(indexTasks.size, equalTo(1))
+
+        indexTasks.forEach { it.run() }
+        assertThat(
+            repository1.query("wines", Query.StringEq("vintage", "2008")),
+            contains(sameEntityAs(leoville))
+        )
+        assertThat(indexTasks.size, equalTo(1))
+    }
+
+    @Test
+    fun `lists are not cached after the database has been removed`() {
+        val dbPath = TempFiles.createTempDir().absolutePath
+        val repository = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath) { 0 }
+
+        repository.save("wines", Entity.New("1", "Léoville Barton 2008"))
+        val version = repository.getListVersion("wines")
+
+        File(dbPath).listFiles()!!.forEach { it.delete() }
+        DatabaseConnection.cleanUp()
+
+        assertThat(repository.getLists(), equalTo(emptyList()))
+        assertThat(repository.query("wines"), equalTo(emptyList()))
+        assertThat(repository.getListVersion("wines") == version, equalTo(false))
+    }
 }
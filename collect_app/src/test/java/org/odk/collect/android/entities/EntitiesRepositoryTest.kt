@@ -303,6 +303,36 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.query("wines").size, equalTo(2))
     }
 
+    @Test
+    fun `#save can save and update large numbers of entities`() {
+        val repository = buildSubject()
+
+        val entities = (0 until 2500).map {
+            Entity.New(it.toString(), "Wine $it", properties = listOf(Pair("vintage", "2008")))
+        }
+        repository.save("wines", *entities.toTypedArray())
+
+        val updates = entities.filterIndexed { index, _ -> index % 2 == 0 }.map {
+            it.copy(version = 2, properties = listOf(Pair("vintage", "2009")))
+        }
+        repository.save("wines", *updates.toTypedArray())
+
+        val saved = repository.query("wines")
+        assertThat(saved.size, equalTo(2500))
+        saved.forEachIndexed { index, entity ->
+            assertThat(entity.index, equalTo(index))
+            assertThat(entity.id, equalTo(index.toString()))
+
+            if (index % 2 == 0) {
+                assertThat(entity.version, equalTo(2))
+                assertThat(entity.properties, contains(Pair("vintage", "2009")))
+            } else {
+                assertThat(entity.version, equalTo(1))
+                assertThat(entity.properties, contains(Pair("vintage", "2008")))
+            }
+        }
+    }
+
     @Test
     fun `#save assigns an index to each entity in insert order when saving multiple entities`() {
         /**
@@ -429,6 +459,31 @@ abstract class EntitiesRepositoryTest {
         assertThat(wines[2].index, equalTo(2))
     }
 
+    @Test
+    fun `#deleteMissingOnlineEntities removes online entities not in ids`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", state = Entity.State.ONLINE)
+        val canet = Entity.New("2", "Pontet-Canet 2014", state = Entity.State.ONLINE)
+        val dows = Entity.New("3", "Dow's 1983", state = Entity.State.OFFLINE)
+        val palmer = Entity.New("4", "Château Palmer 2010", state = Entity.State.ONLINE)
+        repository.save("wines", leoville, canet, dows, palmer)
+
+        repository.deleteMissingOnlineEntities("wines", sequenceOf("2", "other"))
+
+        val wines = repository.query("wines")
+        assertThat(wines, contains(sameEntityAs(canet), sameEntityAs(dows)))
+        assertThat(wines.map { it.index }, contains(0, 1))
+    }
+
+    @Test
+    fun `#deleteMissingOnlineEntities does nothing when the list does not exist`() {
+        val repository = buildSubject()
+
+        repository.deleteMissingOnlineEntities("wines", emptySequence())
+        assertThat(repository.getListNames().contains("wines"), equalTo(false))
+    }
+
     @Test
     fun `#getCount returns 0 when a list is empty`() {
         val repository = buildSubject()
@@ -517,6 +572,158 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.getByIndex("other.favourite.wines", canetIndex), sameEntityAs(canet))
     }
 
+    @Test
+    fun `#getByIndexRange returns entities in range in index order`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        val lagavulin = Entity.New("3", "Lagavulin 16")
+        val edradour = Entity.New("4", "Edradour 10")
+        repository.save("whiskys", springbank, aultmore, lagavulin, edradour)
+
+        val entities = repository.getByIndexRange("whiskys", 1, 3)
+        assertThat(entities, contains(sameEntityAs(aultmore), sameEntityAs(lagavulin)))
+        assertThat(entities.map { it.index }, contains(1, 2))
+    }
+
+    @Test
+    fun `#getByIndexRange returns entities up to the end of the list when range is larger`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        repository.save("whiskys", springbank, aultmore)
+
+        val entities = repository.getByIndexRange("whiskys", 1, 100)
+        assertThat(entities, contains(sameEntityAs(aultmore)))
+    }
+
+    @Test
+    fun `#getByIndexRange returns empty list when the list does not exist`() {
+        val repository = buildSubject()
+        assertThat(repository.getByIndexRange("whiskys", 0, 10), equalTo(emptyList()))
+    }
+
+    @Test
+    fun `#getByIds returns matching entities in index order`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        val lagavulin = Entity.New("3", "Lagavulin 16")
+        repository.save("whiskys", springbank, aultmore, lagavulin)
+
+        val entities = repository.getByIds("whiskys", listOf("3", "1", "other"))
+        assertThat(entities, contains(sameEntityAs(springbank), sameEntityAs(lagavulin)))
+    }
+
+    @Test
+    fun `#getByIds returns empty list when the list does not exist`() {
+        val repository = buildSubject()
+        assertThat(repository.getByIds("whiskys", listOf("1")), equalTo(emptyList()))
+    }
+
+    @Test
+    fun `#getListVersion changes when entities in the list change`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        repository.save("whiskys", springbank)
+        val afterSave = repository.getListVersion("whiskys")
+
+        repository.save("whiskys", springbank.copy(label = "Springbank 12"))
+        val afterUpdate = repository.getListVersion("whiskys")
+        assertThat(afterUpdate == afterSave, equalTo(false))
+
+        repository.delete("whiskys", springbank.id)
+        val afterDelete = repository.getListVersion("whiskys")
+        assertThat(afterDelete == afterUpdate, equalTo(false))
+
+        repository.cleanUpProperties("whiskys", emptySet())
+        assertThat(repository.getListVersion("whiskys") == afterDelete, equalTo(false))
+    }
+
+    @Test
+    fun `#getListVersion does not change when other lists change`() {
+        val repository = buildSubject()
+
+        repository.save("whiskys", Entity.New("1", "Springbank 10"))
+        val version = repository.getListVersion("whiskys")
+
+        repository.save("wines", Entity.New("1", "Léoville Barton 2008"))
+        assertThat(repository.getListVersion("whiskys"), equalTo(version))
+    }
+
+    @Test
+    fun `#getServerDigests returns digests saved with #saveFromServer`() {
+        val repository = buildSubject()
+
+        repository.saveFromServer(
+            "whiskys",
+            listOf(Entity.New("1", "Springbank 10"), Entity.New("2", "Lagavulin 16")),
+            mapOf("1" to "digest1", "3" to "digest3")
+        )
+
+        assertThat(repository.query("whiskys").map { it.id }, equalTo(listOf("1", "2")))
+        assertThat(
+            repository.getServerDigests("whiskys", listOf("1", "2", "3")),
+            equalTo(mapOf("1" to "digest1"))
+        )
+        assertThat(repository.getServerDigests("wines", listOf("1")), equalTo(emptyMap()))
+    }
+
+    @Test
+    fun `#saveFromServer saves digests for entities that are not being saved`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        repository.saveFromServer("whiskys", listOf(springbank), mapOf("1" to "digest1"))
+        repository.saveFromServer(
+            "whiskys",
+            listOf(Entity.New("2", "Lagavulin 16")),
+            mapOf("1" to "digest1.1", "2" to "digest2")
+        )
+
+        assertThat(
+            repository.getServerDigests("whiskys", listOf("1", "2")),
+            equalTo(mapOf("1" to "digest1.1", "2" to "digest2"))
+        )
+
+        repository.saveFromServer("whiskys", emptyList(), mapOf("2" to "digest2.1"))
+        assertThat(
+            repository.getServerDigests("whiskys", listOf("1", "2")),
+            equalTo(mapOf("1" to "digest1.1", "2" to "digest2.1"))
+        )
+    }
+
+    @Test
+    fun `#save removes server digest for saved entities`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val lagavulin = Entity.New("2", "Lagavulin 16")
+        repository.saveFromServer("whiskys", listOf(springbank, lagavulin), mapOf("1" to "digest1", "2" to "digest2"))
+
+        repository.save("whiskys", springbank.copy(label = "Springbank 12"))
+        assertThat(
+            repository.getServerDigests("whiskys", listOf("1", "2")),
+            equalTo(mapOf("2" to "digest2"))
+        )
+    }
+
+    @Test
+    fun `#delete removes server digest for deleted entity`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        repository.saveFromServer("whiskys", listOf(springbank), mapOf("1" to "digest1"))
+
+        repository.delete("whiskys", "1")
+        repository.save("whiskys", springbank)
+        assertThat(repository.getServerDigests("whiskys", listOf("1")), equalTo(emptyMap()))
+    }
+
     @Test
     fun `#getList returns list`() {
         val repository = buildSubject()
@@ -755,6 +962,152 @@ abstract class EntitiesRepositoryTest {
         assertThat(wines, containsInAnyOrder(sameEntityAs(dows)))
     }
 
+    @Test
+    fun `#query returns matching entities with numeric comparison selection arguments`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New(
+            "1",
+            "Léoville Barton 2008",
+            properties = listOf("score" to "5.0")
+        )
+
+        val dows = Entity.New(
+            "2",
+            "Dow's 1983",
+            properties = listOf("score" to "7.5")
+        )
+
+        val canet = Entity.New(
+            "3",
+            "Pontet-Canet 2014",
+            properties = listOf("score" to "")
+        )
+
+        repository.save("wines", leoville, dows, canet)
+
+        assertThat(
+            repository.query("wines", Query.NumericLt("score", 7.5)),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericLte("score", 7.5)),
+            containsInAnyOrder(sameEntityAs(leoville), sameEntityAs(dows))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericGt("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(dows))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericGte("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(leoville), sameEntityAs(dows))
+        )
+    }
+
+    @Test
+    fun `#query returns matching entities with starts with and contains selection arguments`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New("1", "Léoville Barton 2008")
+        val canet = Entity.New("2", "Pontet-Canet 2014")
+        repository.save("wines", leoville, canet)
+
+        assertThat(
+            repository.query("wines", Query.StringStartsWith("label", "Léo")),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+        assertThat(
+            repository.query("wines", Query.StringStartsWith("label", "léo")),
+            equalTo(emptyList())
+        )
+        assertThat(
+            repository.query("wines", Query.StringContains("label", "Canet")),
+            containsInAnyOrder(sameEntityAs(canet))
+        )
+        assertThat(
+            repository.query("wines", Query.StringContains("label", "%")),
+            equalTo(emptyList())
+        )
+    }
+
+    @Test
+    fun `#query returns matching entities with in list selection arguments`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("grape" to "merlot"))
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("grape" to " cabernet "))
+        val dows = Entity.New("3", "Dow's 1983", properties = listOf("grape" to "touriga"))
+        repository.save("wines", leoville, canet, dows)
+
+        assertThat(
+            repository.query("wines", Query.InList("grape", "merlot cabernet")),
+            containsInAnyOrder(sameEntityAs(leoville), sameEntityAs(canet))
+        )
+        assertThat(
+            repository.query("wines", Query.InList("grape", "")),
+            equalTo(emptyList())
+        )
+    }
+
+    @Test
+    fun `#query does not match non numeric values with numeric comparison selection arguments`() {
+        val repository = buildSubject()
+
+        val values = listOf("N/A", "12abc", "1e1", "+3", "1-2", "1.2.3", "-", ".", "")
+        val nonNumeric = values.mapIndexed { index, value ->
+            Entity.New("non-numeric-$index", "Wine $index", properties = listOf("score" to value))
+        }
+
+        val negative = Entity.New("negative", "Negative", properties = listOf("score" to " -.5 "))
+        val large = Entity.New("large", "Large", properties = listOf("score" to "12."))
+        repository.save("wines", *(nonNumeric + negative + large).toTypedArray())
+
+        assertThat(
+            repository.query("wines", Query.NumericLt("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(negative))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericLte("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(negative))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericGt("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(large))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericGte("score", -1.0)),
+            containsInAnyOrder(sameEntityAs(negative), sameEntityAs(large))
+        )
+    }
+
+    @Test
+    fun `#query returns matching entities with list contains selection arguments`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New(
+            "1",
+            "Léoville Barton 2008",
+            properties = listOf("grapes" to "cabernet merlot")
+        )
+
+        val canet = Entity.New(
+            "2",
+            "Pontet-Canet 2014",
+            properties = listOf("grapes" to "cabernet-franc")
+        )
+
+        repository.save("wines", leoville, canet)
+
+        assertThat(
+            repository.query("wines", Query.ListContains("grapes", "cabernet")),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+        assertThat(
+            repository.query("wines", Query.ListContains("grapes", "merlot")),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+    }
+
     @Test
     fun `#query without query returns empty list when there are not entities`() {
         val repository = buildSubject()
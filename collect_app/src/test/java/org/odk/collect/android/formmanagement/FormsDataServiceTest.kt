@@ -18,12 +18,14 @@ import org.mockito.kotlin.mock
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.whenever
 import org.odk.collect.analytics.Analytics
+import org.odk.collect.android.backgroundwork.FormDefCacheScheduler
 import org.odk.collect.android.injection.DaggerUtils
 import org.odk.collect.android.injection.config.ProjectDependencyModuleFactory
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.storage.StorageSubdirectory
 import org.odk.collect.android.utilities.ChangeLockProvider
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidtest.getOrAwaitValue
 import org.odk.collect.androidtest.recordValues
@@ -51,6 +53,7 @@ class FormsDataServiceTest {
     private val storagePathProvider = component.storagePathProvider()
     private val settingsProvider = component.settingsProvider()
     private val notifier = mock<Notifier>()
+    private val formDefCacheScheduler = mock<FormDefCacheScheduler>()
     private val analytics = mock<Analytics>()
 
     private val changeLockProvider = ChangeLockProvider { BooleanChangeLock() }
@@ -87,7 +90,8 @@ class FormsDataServiceTest {
         formsDataService = FormsDataService(
             appState = AppState(),
             notifier = notifier,
-            projectDependencyModuleFactory = projectDependencyModuleFactory
+            projectDependencyModuleFactory = projectDependencyModuleFactory,
+            formDefCacheScheduler = formDefCacheScheduler
         ) { 0 }
     }
 
@@ -113,6 +117,45 @@ class FormsDataServiceTest {
         )
     }
 
+    @Test
+    fun `downloadUpdates() schedules caching of the updated forms`() {
+        addFormLocally(project, "formId", "1")
+
+        val updatedXForm = FormUtils.createXFormBody("formId", "2")
+        addFormToServer(updatedXForm, "formId", "2")
+
+        settingsProvider.getUnprotectedSettings(project.uuid)
+            .save(ProjectKeys.KEY_AUTOMATIC_UPDATE, true)
+
+        formsDataService.downloadUpdates(project.uuid)
+        verify(formDefCacheScheduler).scheduleCaching(project.uuid)
+    }
+
+    @Test
+    fun `cacheFormDefs() caches forms that are not already cached`() {
+        addFormLocally(project, "formId", "1")
+        val form = formsRepositoryProvider.create(project.uuid).getAllByFormIdAndVersion("formId", "1")[0]
+        val formDefCache = ExternalizableFormDefCache(
+            storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE, project.uuid)
+        )
+        assertThat(formDefCache.isCached(form.mD5Hash), equalTo(false))
+
+        assertThat(formsDataService.cacheFormDefs(project.uuid), equalTo(true))
+        assertThat(formDefCache.isCached(form.mD5Hash), equalTo(true))
+    }
+
+    @Test
+    fun `cacheFormDefs() returns false when stopped`() {
+        addFormLocally(project, "formId", "1")
+        val form = formsRepositoryProvider.create(project.uuid).getAllByFormIdAndVersion("formId", "1")[0]
+        val formDefCache = ExternalizableFormDefCache(
+            storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE, project.uuid)
+        )
+
+        assertThat(formsDataService.cacheFormDefs(project.uuid) { true }, equalTo(false))
+        assertThat(formDefCache.isCached(form.mD5Hash), equalTo(false))
+    }
+
     @Test
     fun `downloadUpdates() does nothing when change lock is locked`() {
         val isSyncing = formsDataService.isSyncing(project.uuid)
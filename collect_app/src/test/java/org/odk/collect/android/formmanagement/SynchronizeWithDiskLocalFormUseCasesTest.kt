@@ -0,0 +1,60 @@
+package org.odk.collect.android.formmanagement
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.containsString
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.formstest.FormUtils
+import org.odk.collect.formstest.InMemFormsRepository
+import org.odk.collect.shared.TempFiles
+import java.io.File
+
+@RunWith(AndroidJUnit4::class)
+class SynchronizeWithDiskLocalFormUseCasesTest {
+
+    private val formsRepository = InMemFormsRepository()
+    private val formsDir = TempFiles.createTempDir()
+
+    @Test
+    fun `#synchronizeWithDisk adds all new forms`() {
+        val formIds = (1..20).map { "form$it" }
+        formIds.forEach {
+            File(formsDir, "$it.xml").writeText(FormUtils.createXFormBody(it, "1"))
+        }
+
+        val error = LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.absolutePath)
+        assertThat(error, equalTo(""))
+        assertThat(formsRepository.all.map { it.formId }, containsInAnyOrder(*formIds.toTypedArray()))
+    }
+
+    @Test
+    fun `#synchronizeWithDisk updates forms that have changed`() {
+        val formFile = File(formsDir, "form.xml")
+        formFile.writeText(FormUtils.createXFormBody("form", "1", "Old title"))
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.absolutePath)
+        val dbId = formsRepository.all[0].dbId
+
+        formFile.writeText(FormUtils.createXFormBody("form", "1", "New title"))
+        LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.absolutePath)
+
+        val forms = formsRepository.all
+        assertThat(forms.size, equalTo(1))
+        assertThat(forms[0].dbId, equalTo(dbId))
+        assertThat(forms[0].displayName, equalTo("New title"))
+    }
+
+    @Test
+    fun `#synchronizeWithDisk renames forms that can't be parsed and reports them`() {
+        File(formsDir, "good.xml").writeText(FormUtils.createXFormBody("good", "1"))
+        File(formsDir, "bad.xml").writeText("<h:html>")
+
+        val error = LocalFormUseCases.synchronizeWithDisk(formsRepository, formsDir.absolutePath)
+        assertThat(error, containsString("bad.xml"))
+        assertThat(formsRepository.all.map { it.formId }, equalTo(listOf("good")))
+        assertThat(File(formsDir, "bad.xml").exists(), equalTo(false))
+        assertThat(File(formsDir, "bad.xml.bad").exists(), equalTo(true))
+    }
+}
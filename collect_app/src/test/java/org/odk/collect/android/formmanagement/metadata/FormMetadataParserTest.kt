@@ -194,6 +194,57 @@ class FormMetadataParserTest {
         assertThat(formMetadata.isEntityForm, equalTo(true))
     }
 
+    @Test
+    fun readMetadata_withSecondaryInstances_returnsWhetherAnyHaveASrc() {
+        val withoutSrc = readMetadata(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns="http://www.w3.org/2002/xforms"
+                        xmlns:h="http://www.w3.org/1999/xhtml">
+                    <h:head>
+                        <h:title>My Survey</h:title>
+                        <model>
+                            <instance>
+                                <data id="mysurvey">
+                                </data>
+                            </instance>
+                            <instance id="choices">
+                                <root>
+                                </root>
+                            </instance>
+                        </model>
+                    </h:head>
+                    <h:body>
+                    </h:body>
+                </h:html>
+            """.trimIndent().byteInputStream()
+        )
+
+        val withSrc = readMetadata(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns="http://www.w3.org/2002/xforms"
+                        xmlns:h="http://www.w3.org/1999/xhtml">
+                    <h:head>
+                        <h:title>My Survey</h:title>
+                        <model>
+                            <instance>
+                                <data id="mysurvey">
+                                </data>
+                            </instance>
+                            <instance id="choices" src="jr://file-csv/choices.csv" />
+                        </model>
+                    </h:head>
+                    <h:body>
+                    </h:body>
+                </h:html>
+            """.trimIndent().byteInputStream()
+        )
+
+        assertThat(withoutSrc.hasExternalSecondaryInstances, equalTo(false))
+        assertThat(withSrc.hasExternalSecondaryInstances, equalTo(true))
+    }
+
     @Test
     fun readMetadata_withEmptyFormVersion_returnsNullFormVersion() {
         val formMetadata = readMetadata(
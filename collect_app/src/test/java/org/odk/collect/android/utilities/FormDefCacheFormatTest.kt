@@ -0,0 +1,48 @@
+package org.odk.collect.android.utilities
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import java.io.IOException
+
+class FormDefCacheFormatTest {
+
+    private val serializedFormDef = "blah".repeat(100).toByteArray()
+
+    @Test
+    fun `#decode returns serialized FormDef passed to #encode`() {
+        val decoded = FormDefCacheFormat.decode(FormDefCacheFormat.encode(serializedFormDef, 10, 20))
+        assertThat(decoded.serializedFormDef, equalTo(serializedFormDef))
+    }
+
+    @Test
+    fun `#decode returns serialized FormDef passed to #encode without compression`() {
+        val decoded = FormDefCacheFormat.decode(FormDefCacheFormat.encode(serializedFormDef, 10, 20, false))
+        assertThat(decoded.serializedFormDef, equalTo(serializedFormDef))
+    }
+
+    @Test
+    fun `#decode returns source length and last modified passed to #encode`() {
+        val decoded = FormDefCacheFormat.decode(FormDefCacheFormat.encode(serializedFormDef, 10, 20))
+        assertThat(decoded.sourceLength, equalTo(10L))
+        assertThat(decoded.sourceLastModified, equalTo(20L))
+    }
+
+    @Test
+    fun `#encode compresses serialized FormDef`() {
+        val encoded = FormDefCacheFormat.encode(serializedFormDef, 10, 20)
+        assertThat(encoded.size < serializedFormDef.size, equalTo(true))
+    }
+
+    @Test(expected = IOException::class)
+    fun `#decode throws an exception for files in other formats`() {
+        FormDefCacheFormat.decode(serializedFormDef)
+    }
+
+    @Test(expected = IOException::class)
+    fun `#decode throws an exception when the checksum does not match`() {
+        val encoded = FormDefCacheFormat.encode(serializedFormDef, 10, 20, false)
+        encoded[encoded.size - 1] = (encoded[encoded.size - 1] + 1).toByte()
+        FormDefCacheFormat.decode(encoded)
+    }
+}
@@ -0,0 +1,57 @@
+package org.odk.collect.android.utilities
+
+import android.content.ComponentCallbacks2
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class FormDefMemoryCacheTest {
+
+    @Test
+    fun `evicts least recently used forms when max size is exceeded`() {
+        val cache = FormDefMemoryCache(10)
+        cache.put("form1", ByteArray(4))
+        cache.put("form2", ByteArray(4))
+        cache.get("form1")
+
+        cache.put("form3", ByteArray(4))
+        assertThat(cache.get("form1")?.size, equalTo(4))
+        assertThat(cache.get("form2"), nullValue())
+        assertThat(cache.get("form3")?.size, equalTo(4))
+    }
+
+    @Test
+    fun `#trimMemory when running low halves size`() {
+        val cache = FormDefMemoryCache(10)
+        cache.put("form1", ByteArray(4))
+        cache.put("form2", ByteArray(4))
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+        assertThat(cache.size(), equalTo(4))
+        assertThat(cache.get("form2")?.size, equalTo(4))
+    }
+
+    @Test
+    fun `#trimMemory when in background evicts everything`() {
+        val cache = FormDefMemoryCache(10)
+        cache.put("form1", ByteArray(4))
+
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+        assertThat(cache.size(), equalTo(0))
+    }
+
+    @Test
+    fun `#clear evicts everything`() {
+        val cache = FormDefMemoryCache(10)
+        cache.put("form1", ByteArray(4))
+        cache.put("form2", ByteArray(4))
+
+        cache.clear()
+        assertThat(cache.size(), equalTo(0))
+        assertThat(cache.get("form1"), nullValue())
+    }
+}
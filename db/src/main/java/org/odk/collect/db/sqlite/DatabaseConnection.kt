@@ -5,9 +5,11 @@ import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteDatabase.CursorFactory
 import android.database.sqlite.SQLiteOpenHelper
+import android.database.sqlite.SQLiteStatement
 import android.os.StrictMode
 import timber.log.Timber
 import java.io.File
+import java.util.concurrent.CopyOnWriteArrayList
 
 /**
  * Allows access to a database file. The actual underlying connection (an instance of
@@ -15,6 +17,9 @@ import java.io.File
  * [DatabaseConnection] that refer to the same file.
  *
  * @param migrator used to migrate or create the database automatically before access
+ * @param writeAheadLogging enables write-ahead logging so that reads can happen at the same time
+ * as a write. As the underlying connection is shared, this only takes effect if this is the
+ * first [DatabaseConnection] to access the database (or the first after a [reset]).
  */
 open class DatabaseConnection @JvmOverloads constructor(
     private val context: Context,
@@ -22,7 +27,8 @@ open class DatabaseConnection @JvmOverloads constructor(
     private val name: String,
     private val migrator: DatabaseMigrator,
     private val databaseVersion: Int,
-    private val strict: Boolean = false
+    private val strict: Boolean = false,
+    private val writeAheadLogging: Boolean = false
 ) {
 
     private val databasePath = path + File.separator + name
@@ -43,7 +49,8 @@ open class DatabaseConnection @JvmOverloads constructor(
 
     private val dbHelper: SQLiteOpenHelper
         get() {
-            return synchronized(openHelpers) {
+            var removed = false
+            val dbHelper = synchronized(openHelpers) {
                 if (openHelpers.containsKey(databasePath) && !File(databasePath).exists()) {
                     /*
                      * Ideally we should close the database here as well but it was causing crashes in
@@ -54,6 +61,9 @@ open class DatabaseConnection @JvmOverloads constructor(
                     openHelpers.remove(databasePath)?.let {
                         toClose.add(it)
                     }
+
+                    clearStatements(databasePath)
+                    removed = true
                 }
 
                 openHelpers.getOrPut(databasePath) {
@@ -63,9 +73,17 @@ open class DatabaseConnection @JvmOverloads constructor(
                         null,
                         databaseVersion,
                         migrator
-                    )
+                    ).also {
+                        it.setWriteAheadLoggingEnabled(writeAheadLogging)
+                    }
                 }
             }
+
+            if (removed) {
+                notifyClosed(databasePath, true)
+            }
+
+            return dbHelper
         }
 
     /**
@@ -78,7 +96,53 @@ open class DatabaseConnection @JvmOverloads constructor(
      * [SynchronizedDatabaseConnection] is recommended in those scenarios.
      */
     fun reset() {
-        openHelpers.remove(databasePath)?.close()
+        synchronized(openHelpers) {
+            clearStatements(databasePath)
+            openHelpers.remove(databasePath)?.close()
+        }
+
+        notifyClosed(databasePath, false)
+    }
+
+    /**
+     * Runs [block] with a compiled [SQLiteStatement] for [sql]. Statements are cached (per
+     * database file) until the next [reset] so repeated calls with the same [sql] don't need
+     * to build and prepare a new statement each time. This makes it a good fit for lookups
+     * or writes that are run many times in a row (single values can be read with
+     * [SQLiteStatement.simpleQueryForLong] or [SQLiteStatement.simpleQueryForString]).
+     *
+     * Bindings are cleared before [block] is run and the statement is only used by one thread at
+     * a time. The statement should not be used outside of [block].
+     *
+     * The cache isn't bounded, so [sql] should come from a small, fixed set of strings rather
+     * than containing values (which should be bound instead).
+     */
+    fun <T> withStatement(sql: String, block: (SQLiteStatement) -> T): T {
+        val statement = getCachedStatement(sql) ?: run {
+            // Opening the database and compiling can be slow so shouldn't block other connections
+            val compiled = dbHelper.writableDatabase.compileStatement(sql)
+            synchronized(openHelpers) {
+                val existing = statements[databasePath]?.get(sql)
+                if (existing != null) {
+                    compiled.close()
+                    existing
+                } else {
+                    statements.getOrPut(databasePath) { mutableMapOf() }[sql] = compiled
+                    compiled
+                }
+            }
+        }
+
+        return synchronized(statement) {
+            statement.clearBindings()
+            block(statement)
+        }
+    }
+
+    private fun getCachedStatement(sql: String): SQLiteStatement? {
+        return synchronized(openHelpers) {
+            statements[databasePath]?.get(sql)
+        }
     }
 
     /**
@@ -106,14 +170,26 @@ open class DatabaseConnection @JvmOverloads constructor(
 
         private val openHelpers = mutableMapOf<String, SQLiteOpenHelper>()
         private val toClose = mutableListOf<SQLiteOpenHelper>()
+        private val statements = mutableMapOf<String, MutableMap<String, SQLiteStatement>>()
+        private val closeListeners = CopyOnWriteArrayList<CloseListener>()
+
+        /**
+         * Registers a [CloseListener] that will be called whenever a database's underlying
+         * connection is closed.
+         */
+        @JvmStatic
+        fun addCloseListener(listener: CloseListener) {
+            closeListeners.add(listener)
+        }
 
         @JvmStatic
         fun cleanUp() {
+            val openHelpersToClear = mutableListOf<String>()
             synchronized(openHelpers) {
-                val openHelpersToClear = mutableListOf<String>()
 
                 openHelpers.forEach { (databasePath, openHelper) ->
                     if (!File(databasePath).exists()) {
+                        clearStatements(databasePath)
                         openHelper.close()
                         openHelpersToClear.add(databasePath)
                     }
@@ -123,18 +199,53 @@ open class DatabaseConnection @JvmOverloads constructor(
                     openHelpers.remove(it)
                 }
             }
+
+            openHelpersToClear.forEach { notifyClosed(it, true) }
         }
 
         @JvmStatic
         fun closeAll() {
-            synchronized(openHelpers) {
+            val closedPaths = synchronized(openHelpers) {
+                val closedPaths = openHelpers.keys + statements.keys
+
+                statements.keys.toList().forEach(::clearStatements)
                 openHelpers.forEach { (_, openHelper) -> openHelper.close() }
                 openHelpers.clear()
 
                 toClose.forEach(SQLiteOpenHelper::close)
                 toClose.clear()
+
+                closedPaths
             }
+
+            closedPaths.forEach { notifyClosed(it, true) }
         }
+
+        private fun clearStatements(databasePath: String) {
+            statements.remove(databasePath)?.values?.forEach(SQLiteStatement::close)
+        }
+
+        /**
+         * Listeners are called outside of any locks held by [DatabaseConnection] so that they
+         * can't deadlock with other connections.
+         */
+        private fun notifyClosed(databasePath: String, removed: Boolean) {
+            closeListeners.forEach { it.onClosed(databasePath, removed) }
+        }
+    }
+
+    /**
+     * Allows state held about a database outside of [DatabaseConnection] (like caches of its
+     * contents) to be cleared along with the database's underlying connection.
+     */
+    fun interface CloseListener {
+
+        /**
+         * @param databasePath the path of the database file
+         * @param removed `true` if the connection was closed because the file has been deleted
+         * (or all connections were closed with [closeAll]) rather than by [reset]
+         */
+        fun onClosed(databasePath: String, removed: Boolean)
     }
 }
 
@@ -1,6 +1,7 @@
 package org.odk.collect.db.sqlite
 
 import android.database.Cursor
+import android.database.sqlite.SQLiteDatabase
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_ID
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 
@@ -51,15 +52,80 @@ object RowNumbers {
         }
     }
 
-    private fun SynchronizedDatabaseConnection.ensureRowIdTable(table: String) {
-        resetTransaction {
+    /**
+     * Updates the row numbers for [table] in place rather than requiring them to be recalculated
+     * for the whole table (like after [invalidateRowNumbers]). This should be called in the same
+     * transaction as any inserts or deletes to [table].
+     *
+     * Only appends are incremental: rows inserted since the row numbers were last updated are
+     * added to the end. If rows have been deleted, [fromId] should be the lowest `_id` deleted -
+     * row numbers will then be recalculated from that point in the table onwards, which is still
+     * O(N) in the number of rows after it.
+     */
+    fun SQLiteDatabase.updateRowNumbers(table: String, fromId: Long? = null) {
+        val rowIdTable = getRowIdTableName(table)
+        if (!exists("table", rowIdTable)) {
+            return
+        }
+
+        createRowIdIndex(rowIdTable)
+
+        if (fromId != null) {
             execSQL(
                 """
-                CREATE TABLE IF NOT EXISTS "${getRowIdTableName(table)}" AS SELECT _id FROM "$table" ORDER BY _id;
-                """.trimIndent()
+                DELETE FROM "$rowIdTable" WHERE _id >= ?;
+                """.trimIndent(),
+                arrayOf(fromId)
             )
         }
+
+        execSQL(
+            """
+            INSERT INTO "$rowIdTable" (_id)
+            SELECT _id FROM "$table"
+            WHERE _id > IFNULL((SELECT _id FROM "$rowIdTable" ORDER BY $ROW_ID DESC LIMIT 1), -1)
+            ORDER BY _id;
+            """.trimIndent()
+        )
+    }
+
+    private fun SynchronizedDatabaseConnection.ensureRowIdTable(table: String) {
+        val rowIdTable = getRowIdTableName(table)
+        // row number tables created by older versions won't have the index yet
+        val exists = withConnection {
+            readableDatabase.exists("table", rowIdTable) &&
+                readableDatabase.exists("index", getRowIdIndexName(rowIdTable))
+        }
+
+        if (!exists) {
+            resetTransaction {
+                execSQL(
+                    """
+                    CREATE TABLE IF NOT EXISTS "$rowIdTable" AS SELECT _id FROM "$table" ORDER BY _id;
+                    """.trimIndent()
+                )
+
+                createRowIdIndex(rowIdTable)
+            }
+        }
+    }
+
+    private fun SQLiteDatabase.createRowIdIndex(rowIdTable: String) {
+        execSQL(
+            """
+            CREATE UNIQUE INDEX IF NOT EXISTS "${getRowIdIndexName(rowIdTable)}" ON "$rowIdTable" (_id);
+            """.trimIndent()
+        )
+    }
+
+    private fun SQLiteDatabase.exists(type: String, name: String): Boolean {
+        return rawQuery(
+            "SELECT 1 FROM sqlite_master WHERE type = ? AND name = ?",
+            arrayOf(type, name)
+        ).use { it.count > 0 }
     }
 
     private fun getRowIdTableName(it: String) = "${it}_row_numbers"
+
+    private fun getRowIdIndexName(rowIdTable: String) = "${rowIdTable}_id_index"
 }
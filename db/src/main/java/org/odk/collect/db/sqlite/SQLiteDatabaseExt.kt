@@ -68,6 +68,7 @@ object SQLiteDatabaseExt {
     }
 
     fun SQLiteDatabase.copyTableContent(oldTable: String, newTable: String, columns: List<String>) {
-        this.execSQL("""INSERT INTO "$newTable" SELECT ${columns.joinToString { "\"$it\"" }} FROM "$oldTable";""")
+        val columnList = columns.joinToString { "\"$it\"" }
+        this.execSQL("""INSERT INTO "$newTable" ($columnList) SELECT $columnList FROM "$oldTable";""")
     }
 }
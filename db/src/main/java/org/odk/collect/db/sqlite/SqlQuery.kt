@@ -11,8 +11,20 @@ fun Query.toSql(): SqlQuery {
     return when (this) {
         is Query.StringEq -> SqlQuery("$column = ?", arrayOf(value))
         is Query.StringNotEq -> SqlQuery("$column != ?", arrayOf(value))
+        /*
+         * `LIKE` is avoided for these as it's case insensitive and requires wildcards in the
+         * value to be escaped.
+         */
+        is Query.StringStartsWith -> SqlQuery("substr($column, 1, length(?)) = ?", arrayOf(value, value))
+        is Query.StringContains -> SqlQuery("instr($column, ?) > 0", arrayOf(value))
+        is Query.ListContains -> SqlQuery("instr(' ' || $column || ' ', ?) > 0", arrayOf(" $value "))
+        is Query.InList -> SqlQuery("instr(?, ' ' || ${trim(column)} || ' ') > 0", arrayOf(" $list "))
         is Query.NumericEq -> SqlQuery("CAST($column AS REAL) = CAST(? AS REAL)", arrayOf(value.toString()))
         is Query.NumericNotEq -> SqlQuery("CAST($column AS REAL) != CAST(? AS REAL)", arrayOf(value.toString()))
+        is Query.NumericLt -> SqlQuery("(${isNumber(column)} AND CAST($column AS REAL) < CAST(? AS REAL))", arrayOf(value.toString()))
+        is Query.NumericLte -> SqlQuery("(${isNumber(column)} AND CAST($column AS REAL) <= CAST(? AS REAL))", arrayOf(value.toString()))
+        is Query.NumericGt -> SqlQuery("(${isNumber(column)} AND CAST($column AS REAL) > CAST(? AS REAL))", arrayOf(value.toString()))
+        is Query.NumericGte -> SqlQuery("(${isNumber(column)} AND CAST($column AS REAL) >= CAST(? AS REAL))", arrayOf(value.toString()))
         is Query.And -> {
             val sqlA = queryA.toSql()
             val sqlB = queryB.toSql()
@@ -31,3 +43,20 @@ fun Query.toSql(): SqlQuery {
         }
     }
 }
+
+/**
+ * Removes the same surrounding whitespace as [Query.trimValue].
+ */
+private fun trim(column: String): String {
+    return "trim($column, ' ' || char(9) || char(10) || char(13))"
+}
+
+/**
+ * Only matches values that [Query.toNumberOrNaN] (and XPath) would treat as a number: digits
+ * with an optional leading `-` and at most one `.` (ignoring surrounding whitespace). SQLite
+ * would otherwise treat any other text as 0 or as the number it starts with when cast.
+ */
+private fun isNumber(column: String): String {
+    val value = trim(column)
+    return "($value GLOB '*[0-9]*' AND $value NOT GLOB '*[^0-9.-]*' AND $value NOT GLOB '?*-*' AND $value NOT GLOB '*.*.*')"
+}
@@ -1,15 +1,30 @@
 package org.odk.collect.db.sqlite
 
 import android.content.Context
+import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import androidx.core.database.sqlite.transaction
+import java.io.File
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
 
-class SynchronizedDatabaseConnection(
+/**
+ * Wraps a [DatabaseConnection] so that all access (including [DatabaseConnection.reset]) is
+ * synchronized.
+ *
+ * By default all access is serialized. If [concurrentReads] is enabled, write-ahead logging is
+ * turned on for the database and [withConnection] and [transaction] blocks are allowed to run
+ * at the same time (SQLite itself will only allow one writer at a time). Only
+ * [resetTransaction] blocks get exclusive access as they close the underlying connection.
+ */
+class SynchronizedDatabaseConnection @JvmOverloads constructor(
     context: Context,
     path: String,
     name: String,
     migrator: DatabaseMigrator,
-    databaseVersion: Int
+    databaseVersion: Int,
+    private val concurrentReads: Boolean = false
 ) {
     private val databaseConnection = DatabaseConnection(
         context,
@@ -17,11 +32,26 @@ class SynchronizedDatabaseConnection(
         name,
         migrator,
         databaseVersion,
-        true
+        true,
+        concurrentReads
     )
 
+    private val lock = getLock(path + File.separator + name)
+
     fun <T> withConnection(block: DatabaseConnection.() -> T): T {
-        return databaseConnection.withSynchronizedConnection(block)
+        return if (concurrentReads) {
+            lock.read {
+                val result = block(databaseConnection)
+
+                if (result !is Cursor) {
+                    result
+                } else {
+                    throw IllegalStateException("Returning a Cursor removes synchronized guarantees!")
+                }
+            }
+        } else {
+            databaseConnection.withSynchronizedConnection(block)
+        }
     }
 
     fun transaction(
@@ -37,16 +67,51 @@ class SynchronizedDatabaseConnection(
     /**
      * Runs a transaction and then calls [DatabaseConnection.reset]. Useful for transactions
      * that will mutate the DB schema.
+     *
+     * If [concurrentReads] is enabled, this waits for all other blocks to finish. It can't be
+     * called from inside a [withConnection] or [transaction] block in that case (as this would
+     * mean giving up that block's access part way through) and will throw an
+     * [IllegalStateException] if it is.
      */
     fun resetTransaction(
         body: SQLiteDatabase.() -> Unit
     ) {
-        withConnection {
-            writableDatabase.transaction {
-                body()
+        exclusively {
+            withConnection {
+                writableDatabase.transaction {
+                    body()
+                }
+
+                reset()
             }
+        }
+    }
 
-            reset()
+    private fun exclusively(block: () -> Unit) {
+        if (concurrentReads) {
+            // `write` would release this thread's read locks rather than failing
+            if (lock.readHoldCount > 0) {
+                throw IllegalStateException("Cannot get exclusive access from inside another block!")
+            }
+
+            lock.write(block)
+        } else {
+            block()
+        }
+    }
+
+    companion object {
+
+        /**
+         * Locks are shared between connections to the same database file (like the underlying
+         * [android.database.sqlite.SQLiteOpenHelper] instances in [DatabaseConnection]).
+         */
+        private val locks = mutableMapOf<String, ReentrantReadWriteLock>()
+
+        private fun getLock(databasePath: String): ReentrantReadWriteLock {
+            return synchronized(locks) {
+                locks.getOrPut(databasePath) { ReentrantReadWriteLock() }
+            }
         }
     }
 }
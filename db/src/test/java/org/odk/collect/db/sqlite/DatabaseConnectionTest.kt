@@ -3,6 +3,7 @@ package org.odk.collect.db.sqlite
 import android.content.Context
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
@@ -48,6 +49,61 @@ class DatabaseConnectionTest {
         }
     }
 
+    @Test
+    fun `#withStatement can be used again after #reset`() {
+        val dbConnection = DatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.writableDatabase.execSQL("CREATE TABLE blah (id integer);")
+        dbConnection.writableDatabase.execSQL("INSERT INTO blah VALUES (1);")
+
+        val sql = "SELECT COUNT(*) FROM blah WHERE id = ?"
+        val countBeforeReset = dbConnection.withStatement(sql) {
+            it.bindLong(1, 1)
+            it.simpleQueryForLong()
+        }
+        assertEquals(1L, countBeforeReset)
+
+        dbConnection.reset()
+        dbConnection.writableDatabase.execSQL("DELETE FROM blah;")
+
+        val countAfterReset = dbConnection.withStatement(sql) {
+            it.bindLong(1, 1)
+            it.simpleQueryForLong()
+        }
+        assertEquals(0L, countAfterReset)
+    }
+
+    @Test
+    fun `#withStatement clears bindings from previous uses`() {
+        val dbConnection = DatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.writableDatabase.execSQL("CREATE TABLE blah (id integer);")
+        dbConnection.writableDatabase.execSQL("INSERT INTO blah VALUES (NULL);")
+
+        val sql = "SELECT COUNT(*) FROM blah WHERE id IS ?"
+        dbConnection.withStatement(sql) {
+            it.bindLong(1, 1)
+            it.simpleQueryForLong()
+        }
+
+        val count = dbConnection.withStatement(sql) {
+            it.simpleQueryForLong()
+        }
+        assertEquals(1L, count)
+    }
+
     // https://github.com/getodk/collect/issues/5042
     @Test
     fun `database file should be recreated if removed between operations`() {
@@ -13,6 +13,7 @@ import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.db.sqlite.CursorExt.rowToMap
 import org.odk.collect.db.sqlite.RowNumbers.invalidateRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.rawQueryWithRowNumber
+import org.odk.collect.db.sqlite.RowNumbers.updateRowNumbers
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 import org.odk.collect.db.sqlite.support.NoopMigrator
 import org.odk.collect.shared.TempFiles
@@ -95,4 +96,116 @@ class RowNumbersTest {
         assertThat(afterRows[1]["position"], equalTo("third"))
         assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
     }
+
+    @Test
+    fun `#rawQueryWithRowNumber returns results ordered by updated row_number column after rows inserted and updateRowNumbers`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+        }
+
+        val beforeRows = dbConnection.rawQueryWithRowNumber("test_table") { cursor ->
+            cursor.foldAndClose { it.rowToMap() }
+        }
+        assertThat(beforeRows.size, equalTo(1))
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "second") })
+            updateRowNumbers("test_table")
+        }
+
+        val afterRows = dbConnection.rawQueryWithRowNumber("test_table") { cursor ->
+            cursor.foldAndClose { it.rowToMap() }
+        }
+        assertThat(afterRows.size, equalTo(2))
+
+        assertThat(afterRows[0]["position"], equalTo("first"))
+        assertThat(afterRows[0][ROW_NUMBER], equalTo("1"))
+
+        assertThat(afterRows[1]["position"], equalTo("second"))
+        assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
+    }
+
+    @Test
+    fun `#rawQueryWithRowNumber returns results ordered by updated row_number column after row deleted and updateRowNumbers`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "second") })
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "third") })
+        }
+
+        val beforeRows = dbConnection.rawQueryWithRowNumber("test_table") { cursor ->
+            cursor.foldAndClose { it.rowToMap() }
+        }
+        assertThat(beforeRows.size, equalTo(3))
+
+        dbConnection.transaction {
+            val deletedId = beforeRows[1][_ID]!!.toLong()
+            delete("test_table", "$_ID = ?", arrayOf(deletedId.toString()))
+            updateRowNumbers("test_table", deletedId)
+        }
+
+        val afterRows = dbConnection.rawQueryWithRowNumber("test_table") { cursor ->
+            cursor.foldAndClose { it.rowToMap() }
+        }
+        assertThat(afterRows.size, equalTo(2))
+
+        assertThat(afterRows[0]["position"], equalTo("first"))
+        assertThat(afterRows[0][ROW_NUMBER], equalTo("1"))
+
+        assertThat(afterRows[1]["position"], equalTo("third"))
+        assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
+    }
+
+    @Test
+    fun `#updateRowNumbers indexes row number tables created without an index`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+            execSQL("CREATE TABLE test_table_row_numbers AS SELECT $_ID FROM test_table ORDER BY $_ID")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+            updateRowNumbers("test_table")
+        }
+
+        val indexes = dbConnection.withConnection {
+            readableDatabase.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'test_table_row_numbers'",
+                null
+            ).foldAndClose { it.getString(0) }
+        }
+        assertThat(indexes, equalTo(listOf("test_table_row_numbers_id_index")))
+    }
 }
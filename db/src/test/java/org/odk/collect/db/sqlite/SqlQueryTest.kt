@@ -53,4 +53,54 @@ class SqlQueryTest {
         assertThat(combinedQuery.selection, equalTo("((status = ? OR role != ?) AND team = ?)"))
         assertThat(combinedQuery.selectionArgs, equalTo(arrayOf("active", "admin", "engineering")))
     }
+
+    @Test
+    fun `StartsWith query generates correct selection and arguments`() {
+        val query = Query.StringStartsWith("name", "Jo").toSql()
+
+        assertThat(query.selection, equalTo("substr(name, 1, length(?)) = ?"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("Jo", "Jo")))
+    }
+
+    @Test
+    fun `Contains query generates correct selection and arguments`() {
+        val query = Query.StringContains("name", "oh").toSql()
+
+        assertThat(query.selection, equalTo("instr(name, ?) > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("oh")))
+    }
+
+    @Test
+    fun `ListContains query generates correct selection and arguments`() {
+        val query = Query.ListContains("colors", "red").toSql()
+
+        assertThat(query.selection, equalTo("instr(' ' || colors || ' ', ?) > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf(" red ")))
+    }
+
+    @Test
+    fun `InList query generates correct selection and arguments`() {
+        val query = Query.InList("color", "red blue").toSql()
+
+        assertThat(
+            query.selection,
+            equalTo("instr(?, ' ' || trim(color, ' ' || char(9) || char(10) || char(13)) || ' ') > 0")
+        )
+        assertThat(query.selectionArgs, equalTo(arrayOf(" red blue ")))
+    }
+
+    @Test
+    fun `Lt query generates correct selection and arguments`() {
+        val query = Query.NumericLt("age", 30.0).toSql()
+
+        val value = "trim(age, ' ' || char(9) || char(10) || char(13))"
+        assertThat(
+            query.selection,
+            equalTo(
+                "(($value GLOB '*[0-9]*' AND $value NOT GLOB '*[^0-9.-]*' AND $value NOT GLOB '?*-*' AND $value NOT GLOB '*.*.*') " +
+                    "AND CAST(age AS REAL) < CAST(? AS REAL))"
+            )
+        )
+        assertThat(query.selectionArgs, equalTo(arrayOf("30.0")))
+    }
 }
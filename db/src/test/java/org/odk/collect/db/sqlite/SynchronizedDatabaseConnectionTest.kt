@@ -0,0 +1,103 @@
+package org.odk.collect.db.sqlite
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.db.sqlite.CursorExt.first
+import org.odk.collect.db.sqlite.support.NoopMigrator
+import org.odk.collect.shared.TempFiles
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+@RunWith(AndroidJUnit4::class)
+class SynchronizedDatabaseConnectionTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+
+    @Test
+    fun `#withConnection does not wait for other blocks when concurrentReads is enabled`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1,
+            concurrentReads = true
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table (value text)")
+            execSQL("INSERT INTO test_table VALUES ('blah')")
+        }
+
+        val blockStarted = CountDownLatch(1)
+        val finishBlock = CountDownLatch(1)
+        val otherThread = thread {
+            dbConnection.withConnection {
+                blockStarted.countDown()
+                finishBlock.await(5, TimeUnit.SECONDS)
+            }
+        }
+
+        blockStarted.await()
+        val value = dbConnection.withConnection {
+            readableDatabase.rawQuery("SELECT value FROM test_table", null).first {
+                it.getString(0)
+            }
+        }
+        assertThat(value, equalTo("blah"))
+        assertThat(finishBlock.count, equalTo(1L))
+
+        finishBlock.countDown()
+        otherThread.join()
+    }
+
+    @Test
+    fun `#resetTransaction throws an exception when called from inside #withConnection when concurrentReads is enabled`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1,
+            concurrentReads = true
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table (value text)")
+        }
+
+        assertThrows(IllegalStateException::class.java) {
+            dbConnection.withConnection {
+                dbConnection.resetTransaction {
+                    execSQL("DROP TABLE test_table")
+                }
+            }
+        }
+
+        assertThrows(IllegalStateException::class.java) {
+            dbConnection.transaction {
+                dbConnection.resetTransaction {
+                    execSQL("DROP TABLE test_table")
+                }
+            }
+        }
+
+        dbConnection.transaction {
+            execSQL("INSERT INTO test_table VALUES ('blah')")
+        }
+
+        val count = dbConnection.withConnection {
+            readableDatabase.rawQuery("SELECT COUNT(*) FROM test_table", null).first {
+                it.getInt(0)
+            }
+        }
+        assertThat(count, equalTo(1))
+    }
+}
@@ -75,10 +75,13 @@ dependencies {
     debugImplementation(libs.androidXComposeTooling)
 
     testImplementation(project(":forms-test"))
+    testImplementation(project(":androidtest"))
+    testImplementation(project(":test-shared"))
     testImplementation(libs.junit)
     testImplementation(libs.robolectric)
     testImplementation(libs.hamcrest)
     testImplementation(libs.mockitoKotlin)
+    testImplementation(libs.androidxArchCoreTesting)
     testImplementation(libs.javarosa) // Include with all dependencies
     testImplementation(libs.androidXComposeUiTestJunit4)
     debugImplementation(libs.androidXComposeUiTestManifest)
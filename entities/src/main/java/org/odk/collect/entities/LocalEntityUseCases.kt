@@ -15,6 +15,8 @@ import org.odk.collect.entities.storage.findEntityById
 import org.odk.collect.forms.MediaFile
 import org.odk.collect.shared.debug.DebugLogger
 import java.io.File
+import java.math.BigInteger
+import java.security.MessageDigest
 import java.util.UUID
 
 object LocalEntityUseCases {
@@ -99,6 +101,18 @@ object LocalEntityUseCases {
         )
     }
 
+    /**
+     * Updates [list] to match the server entity list CSV ([serverList]). The CSV is processed
+     * in batches (looking up and saving only the local entities in each batch) so that
+     * memory use doesn't grow with the size of the list.
+     *
+     * A digest of each row is stored with the entity it updates (see
+     * [EntitiesRepository.saveFromServer]) so that rows that haven't changed since the last
+     * update can be skipped without being parsed or compared with the local entity.
+     *
+     * Every row is checked before anything is changed so that a malformed row can't leave
+     * the list partially updated.
+     */
     fun updateLocalEntitiesFromServer(
         list: String,
         serverList: File,
@@ -118,49 +132,30 @@ object LocalEntityUseCases {
             return
         }
 
+        if (!csvParser.headerMap.keys.containsAll(REQUIRED_COLUMNS) || !isValidServerList(serverList)) {
+            csvParser.close()
+            return
+        }
+
         val serverProperties = csvParser.headerMap.removeReservedProperties().keys
         entitiesRepository.cleanUpProperties(list, serverProperties)
-        val localEntities = entitiesRepository.query(list)
 
-        val missingFromServer = localEntities.associateBy { it.id }.toMutableMap()
-        val newAndUpdated = ArrayList<Entity>()
         csvParser.use {
+            val rowDigester = RowDigester(csvParser.headerMap.keys)
+            val batch = ArrayList<CSVRecord>(SERVER_BATCH_SIZE)
             it.forEach { record ->
-                val serverEntity = parseEntityFromRecord(record) ?: return
-                val existing = missingFromServer.remove(serverEntity.id)
-
-                if (existing == null) {
-                    newAndUpdated.add(
-                        Entity.New(
-                            serverEntity.id,
-                            serverEntity.label,
-                            serverEntity.version,
-                            serverEntity.properties.toList(),
-                            state = Entity.State.ONLINE,
-                            trunkVersion = serverEntity.version,
-                            branchId = UUID.randomUUID().toString()
-                        )
-                    )
-                } else if (existing.version < serverEntity.version) {
-                    newAndUpdated.add(serverEntity.updateLocal(existing))
-                } else if (existing.version == serverEntity.version) {
-                    if (existing.isDirty()) {
-                        newAndUpdated.add(serverEntity.updateLocal(existing))
-                    }
-                } else if (existing.state == Entity.State.OFFLINE) {
-                    val update = existing.copy(state = Entity.State.ONLINE)
-                    newAndUpdated.add(update)
+                batch.add(record)
+
+                if (batch.size == SERVER_BATCH_SIZE) {
+                    saveServerEntities(list, batch, rowDigester, entitiesRepository)
+                    batch.clear()
                 }
             }
-        }
 
-        missingFromServer.values
-            .filter { it.state == Entity.State.ONLINE }
-            .forEach {
-                entitiesRepository.delete(list, it.id)
-            }
+            saveServerEntities(list, batch, rowDigester, entitiesRepository)
+        }
 
-        entitiesRepository.save(list, *newAndUpdated.toTypedArray())
+        entitiesRepository.deleteMissingOnlineEntities(list, readServerIds(serverList))
         entitiesRepository.updateList(
             list,
             mediaFile.hash,
@@ -189,30 +184,131 @@ object LocalEntityUseCases {
         }
     }
 
-    private fun parseEntityFromRecord(record: CSVRecord): ServerEntity? {
-        val map = record.toMap()
+    private fun saveServerEntities(
+        list: String,
+        records: List<CSVRecord>,
+        rowDigester: RowDigester,
+        entitiesRepository: EntitiesRepository
+    ) {
+        if (records.isEmpty()) {
+            return
+        }
+
+        val digestedRecords = records.map { Pair(it, rowDigester.digest(it)) }
+        val existingDigests = entitiesRepository.getServerDigests(
+            list,
+            records.mapNotNull { it.getIdOrNull() }
+        )
+
+        val serverEntities = digestedRecords
+            .filterNot { (record, digest) -> record.getIdOrNull()?.let { existingDigests[it] } == digest }
+            .map { (record, digest) -> parseEntityFromRecord(record, digest) }
+
+        if (serverEntities.isEmpty()) {
+            return
+        }
+
+        val localEntities = entitiesRepository
+            .getByIds(list, serverEntities.map { it.id })
+            .associateBy { it.id }
+
+        val newAndUpdated = mutableListOf<Entity>()
+        val serverDigests = mutableMapOf<String, String>()
+        serverEntities.forEach { serverEntity ->
+            val existing = localEntities[serverEntity.id]
+
+            if (existing == null) {
+                newAndUpdated.add(
+                    Entity.New(
+                        serverEntity.id,
+                        serverEntity.label,
+                        serverEntity.version,
+                        serverEntity.properties.toList(),
+                        state = Entity.State.ONLINE,
+                        trunkVersion = serverEntity.version,
+                        branchId = UUID.randomUUID().toString()
+                    )
+                )
+                serverDigests[serverEntity.id] = serverEntity.digest
+            } else if (existing.version < serverEntity.version) {
+                newAndUpdated.add(serverEntity.updateLocal(existing))
+                serverDigests[serverEntity.id] = serverEntity.digest
+            } else if (existing.version == serverEntity.version) {
+                if (existing.isDirty()) {
+                    newAndUpdated.add(serverEntity.updateLocal(existing))
+                }
+
+                serverDigests[serverEntity.id] = serverEntity.digest
+            } else if (existing.state == Entity.State.OFFLINE) {
+                newAndUpdated.add(existing.copy(state = Entity.State.ONLINE))
+            }
+        }
+
+        entitiesRepository.saveFromServer(list, newAndUpdated, serverDigests)
+    }
 
-        val id = map[EntitySchema.ID]
-        val label = map[EntitySchema.LABEL]
-        val version = map[EntitySchema.VERSION]?.toInt()
-        if (id == null || label == null || version == null) {
-            return null
+    /**
+     * Streams through a server entity list CSV to check that every row can be parsed without
+     * holding the rows in memory.
+     */
+    private fun isValidServerList(serverList: File): Boolean {
+        return SecondaryInstanceCSVParserBuilder()
+            .path(serverList.absolutePath)
+            .build()
+            .use { csvParser ->
+                csvParser.all { record ->
+                    REQUIRED_COLUMNS.all { record.isSet(it) } &&
+                        record.get(EntitySchema.VERSION).toIntOrNull() != null
+                }
+            }
+    }
+
+    /**
+     * Lazily reads the entity ids from a server entity list CSV so they can be passed to
+     * [EntitiesRepository.deleteMissingOnlineEntities] without holding them all in memory.
+     */
+    private fun readServerIds(serverList: File): Sequence<String> {
+        return sequence {
+            SecondaryInstanceCSVParserBuilder()
+                .path(serverList.absolutePath)
+                .build()
+                .use { csvParser ->
+                    csvParser.forEach { record ->
+                        yield(record.get(EntitySchema.ID))
+                    }
+                }
         }
+    }
+
+    /**
+     * Should only be called with records that have been checked by [isValidServerList].
+     */
+    private fun parseEntityFromRecord(record: CSVRecord, digest: String): ServerEntity {
+        val map = record.toMap()
 
         return ServerEntity(
-            id,
-            label,
-            version,
-            map.removeReservedProperties()
+            map.getValue(EntitySchema.ID),
+            map.getValue(EntitySchema.LABEL),
+            map.getValue(EntitySchema.VERSION).toInt(),
+            map.removeReservedProperties(),
+            digest
         )
     }
+
+    private fun CSVRecord.getIdOrNull(): String? {
+        return if (isSet(EntitySchema.ID)) get(EntitySchema.ID) else null
+    }
 }
 
+private const val SERVER_BATCH_SIZE = 1000
+private val REQUIRED_COLUMNS = listOf(EntitySchema.ID, EntitySchema.LABEL, EntitySchema.VERSION)
+
 private data class ServerEntity(
     val id: String,
     val label: String,
     val version: Int,
-    val properties: Map<String, String>
+    val properties: Map<String, String>,
+    val digest: String
 ) {
 
     fun updateLocal(local: Entity.Saved): Entity.Saved {
@@ -227,6 +323,33 @@ private data class ServerEntity(
     }
 }
 
+/**
+ * Creates digests of server entity list rows. The header is included in each digest so that
+ * adding, removing or reordering columns changes the digest of every row.
+ */
+private class RowDigester(header: Collection<String>) {
+
+    private val headerDigest = MessageDigest.getInstance("MD5").also { messageDigest ->
+        header.forEach { messageDigest.updateWithValue(it) }
+    }
+
+    fun digest(record: CSVRecord): String {
+        val messageDigest = headerDigest.clone() as MessageDigest
+        record.forEach { messageDigest.updateWithValue(it) }
+        return BigInteger(1, messageDigest.digest()).toString(16)
+    }
+
+    /**
+     * Values are prefixed with their length so that moving characters between neighbouring
+     * values changes the digest.
+     */
+    private fun MessageDigest.updateWithValue(value: String) {
+        val bytes = value.toByteArray()
+        update("${bytes.size}:".toByteArray())
+        update(bytes)
+    }
+}
+
 private fun <T> Map<String, T>.removeReservedProperties(): Map<String, T> {
     return filterNot {
         it.key == EntitySchema.ID || it.key == EntitySchema.LABEL || it.key.startsWith("__")
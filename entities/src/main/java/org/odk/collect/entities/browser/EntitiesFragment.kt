@@ -5,9 +5,10 @@ import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.itemsIndexed
 import androidx.compose.material3.HorizontalDivider
 import androidx.compose.material3.Surface
+import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.livedata.observeAsState
 import androidx.compose.ui.platform.ComposeView
@@ -32,12 +33,19 @@ class EntitiesFragment(private val viewModelFactory: ViewModelProvider.Factory)
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         val composeView = view as ComposeView
         val list = EntitiesFragmentArgs.fromBundle(requireArguments()).list
+        val entitiesLiveData = entitiesViewModel.getEntities(list)
         composeView.setContextThemedContent(ViewCompositionStrategy.DisposeOnViewTreeLifecycleDestroyed) {
             Surface {
-                val entities by entitiesViewModel.getEntities(list).observeAsState(emptyList())
+                val entities by entitiesLiveData.observeAsState(emptyList())
                 LazyColumn {
-                    items(entities) {
-                        EntityItem(entity = it)
+                    itemsIndexed(entities) { index, entity ->
+                        if (index == entities.lastIndex) {
+                            LaunchedEffect(entities.size) {
+                                entitiesViewModel.loadMoreEntities(list)
+                            }
+                        }
+
+                        EntityItem(entity = entity)
                         HorizontalDivider()
                     }
                 }
@@ -16,18 +16,120 @@ class EntitiesViewModel(
     private val _lists = MutableLiveData<List<String>>(emptyList())
     val lists: LiveData<List<String>> = _lists
 
+    private val pagedEntities = mutableMapOf<String, PagedEntities>()
+
     init {
         scheduler.immediate {
             _lists.postValue(entitiesRepository.getListNames().toList())
         }
     }
 
+    /**
+     * Returns the entities in [list] loaded so far. Only the first [PAGE_SIZE] entities are
+     * loaded initially - call [loadMoreEntities] to load the next page. Entities loaded by
+     * earlier calls are reused unless the list has changed since (see
+     * [EntitiesRepository.getListVersion]), in which case they are loaded again from the start.
+     */
     fun getEntities(list: String): LiveData<List<Entity.Saved>> {
-        val result = MutableLiveData<List<Entity.Saved>>(emptyList())
-        scheduler.immediate {
-            result.postValue(entitiesRepository.query(list))
+        return pagedEntities.getOrPut(list) { PagedEntities(list) }.also {
+            it.refresh()
+        }.entities
+    }
+
+    fun loadMoreEntities(list: String) {
+        pagedEntities[list]?.loadMore()
+    }
+
+    private inner class PagedEntities(private val list: String) {
+
+        private val _entities = MutableLiveData<List<Entity.Saved>>(emptyList())
+        val entities: LiveData<List<Entity.Saved>> = _entities
+
+        /**
+         * Pages are appended to this rather than creating a new list for each page. A new list
+         * is only created when loading starts again from the first page.
+         */
+        private var loaded = ArrayList<Entity.Saved>()
+        private var listVersion: Long? = null
+        private var loading = false
+        private var loadMoreRequested = false
+        private var complete = false
+
+        fun refresh() {
+            if (!loading) {
+                load(null)
+            }
         }
 
-        return result
+        fun loadMore() {
+            if (loading) {
+                loadMoreRequested = true
+            } else if (!complete) {
+                load(loaded.size)
+            }
+        }
+
+        /**
+         * Loads the page starting at [from] or just checks that the list hasn't changed if
+         * [from] is `null`. Loading starts again from the first page if the list has changed.
+         */
+        private fun load(from: Int?) {
+            loading = true
+            val expectedVersion = listVersion
+            scheduler.immediate(
+                background = {
+                    val version = entitiesRepository.getListVersion(list)
+                    val start = if (version == expectedVersion) from else 0
+
+                    if (start != null) {
+                        Page(version, start, entitiesRepository.getByIndexRange(list, start, start + PAGE_SIZE))
+                    } else {
+                        null
+                    }
+                },
+                foreground = { page ->
+                    if (page != null) {
+                        if (page.start == 0) {
+                            loaded = ArrayList()
+                        }
+
+                        loaded.addAll(page.entities)
+                        listVersion = page.version
+                        complete = page.entities.size < PAGE_SIZE
+                        _entities.value = LoadedEntities(loaded, loaded.size)
+                    }
+
+                    loading = false
+                    if (loadMoreRequested) {
+                        loadMoreRequested = false
+                        loadMore()
+                    }
+                }
+            )
+        }
+    }
+
+    private class Page(val version: Long, val start: Int, val entities: List<Entity.Saved>)
+
+    /**
+     * Read-only view of the first [size] entities in [loaded]. As entities are only ever
+     * appended to [loaded], this stays the same as later pages are added.
+     */
+    private class LoadedEntities(
+        private val loaded: List<Entity.Saved>,
+        override val size: Int
+    ) : AbstractList<Entity.Saved>() {
+
+        override fun get(index: Int): Entity.Saved {
+            if (index >= size) {
+                throw IndexOutOfBoundsException("Index: $index, Size: $size")
+            }
+
+            return loaded[index]
+        }
+    }
+
+    companion object {
+        const val PAGE_SIZE = 100
     }
 }
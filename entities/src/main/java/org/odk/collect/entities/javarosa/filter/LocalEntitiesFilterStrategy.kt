@@ -3,6 +3,7 @@ package org.odk.collect.entities.javarosa.filter
 import org.javarosa.core.model.condition.EvaluationContext
 import org.javarosa.core.model.condition.FilterStrategy
 import org.javarosa.core.model.instance.DataInstance
+import org.javarosa.core.model.instance.TreeElement
 import org.javarosa.core.model.instance.TreeReference
 import org.javarosa.xpath.expr.XPathExpression
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceAdapter
@@ -20,11 +21,22 @@ import java.util.function.Supplier
  * [LocalEntitiesInstanceProvider] or similar is used to take advantage of JavaRosa's partial
  * parsing).
  */
-class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
+class LocalEntitiesFilterStrategy(private val entitiesRepository: EntitiesRepository) :
     FilterStrategy {
 
     private val instanceAdapter = LocalEntitiesInstanceAdapter(entitiesRepository)
 
+    /**
+     * Results for recent queries. Forms will often reevaluate the same filter (on screen
+     * refreshes or recomputations) when neither the values it refers to nor the list have
+     * changed, so this avoids going back to the repository in those cases.
+     */
+    private val queryCache = object : LinkedHashMap<Pair<String, Query>, CachedResult>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<String, Query>, CachedResult>?): Boolean {
+            return size > MAX_CACHED_QUERIES
+        }
+    }
+
     override fun filter(
         sourceInstance: DataInstance<*>,
         nodeSet: TreeReference,
@@ -53,11 +65,31 @@ class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
         query: Query,
         sourceInstance: DataInstance<*>
     ): List<TreeReference> {
-        val results = instanceAdapter.query(sourceInstance.instanceId, query)
+        val results = query(sourceInstance.instanceId, query)
         sourceInstance.replacePartialElements(results)
         return results.map {
             it.parent = sourceInstance.root
             it.ref
         }
     }
+
+    private fun query(list: String, query: Query): List<TreeElement> {
+        val key = Pair(list, query)
+        val listVersion = entitiesRepository.getListVersion(list)
+
+        val cached = queryCache[key]
+        return if (cached != null && cached.listVersion == listVersion) {
+            cached.results
+        } else {
+            instanceAdapter.query(list, query).also {
+                queryCache[key] = CachedResult(listVersion, it)
+            }
+        }
+    }
+
+    private data class CachedResult(val listVersion: Long, val results: List<TreeElement>)
+
+    companion object {
+        private const val MAX_CACHED_QUERIES = 32
+    }
 }
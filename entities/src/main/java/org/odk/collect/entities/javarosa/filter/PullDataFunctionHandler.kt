@@ -4,17 +4,30 @@ import org.javarosa.core.model.condition.EvaluationContext
 import org.javarosa.core.model.condition.IFunctionHandler
 import org.javarosa.xpath.expr.XPathFuncExpr
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceAdapter
+import org.odk.collect.entities.javarosa.parse.EntitySchema
 import org.odk.collect.entities.storage.EntitiesRepository
+import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.QueryException
 import org.odk.collect.shared.Query
 
 class PullDataFunctionHandler(
-    entitiesRepository: EntitiesRepository,
+    private val entitiesRepository: EntitiesRepository,
     private val fallback: IFunctionHandler? = null
 ) : IFunctionHandler {
 
     private val instanceAdapter = LocalEntitiesInstanceAdapter(entitiesRepository)
 
+    /**
+     * Entities matched by recent lookups. Forms will often have many `pulldata` calls that use
+     * the same lookup to pull different values, so this means the entity only needs to be
+     * fetched once (until the list changes).
+     */
+    private val lookupCache = object : LinkedHashMap<Lookup, CachedEntity>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Lookup, CachedEntity>?): Boolean {
+            return size > MAX_CACHED_LOOKUPS
+        }
+    }
+
     override fun getName(): String {
         return NAME
     }
@@ -40,8 +53,8 @@ class PullDataFunctionHandler(
             val filterValue = XPathFuncExpr.toString(args[3])
 
             try {
-                instanceAdapter.query(instanceId, Query.StringEq(filterChild, filterValue)).firstOrNull()
-                    ?.getFirstChild(child)?.value?.value ?: ""
+                val entity = lookup(Lookup(instanceId, filterChild, filterValue))
+                entity?.let { getChildValue(it, child) } ?: ""
             } catch (e: QueryException) {
                 ""
             }
@@ -50,7 +63,37 @@ class PullDataFunctionHandler(
         }
     }
 
+    private fun lookup(lookup: Lookup): Entity.Saved? {
+        val listVersion = entitiesRepository.getListVersion(lookup.list)
+
+        val cached = lookupCache[lookup]
+        return if (cached != null && cached.listVersion == listVersion) {
+            cached.entity
+        } else {
+            entitiesRepository
+                .query(lookup.list, Query.StringEq(lookup.filterChild, lookup.filterValue))
+                .firstOrNull()
+                .also { lookupCache[lookup] = CachedEntity(listVersion, it) }
+        }
+    }
+
+    private fun getChildValue(entity: Entity.Saved, child: String): String {
+        return when (child) {
+            EntitySchema.ID -> entity.id
+            EntitySchema.LABEL -> entity.label ?: ""
+            EntitySchema.VERSION -> entity.version.toString()
+            EntitySchema.TRUNK_VERSION -> entity.trunkVersion?.toString() ?: ""
+            EntitySchema.BRANCH_ID -> entity.branchId
+            else -> entity.properties.find { it.first == child }?.second ?: ""
+        }
+    }
+
+    private data class Lookup(val list: String, val filterChild: String, val filterValue: String)
+
+    private data class CachedEntity(val listVersion: Long, val entity: Entity.Saved?)
+
     companion object {
         private const val NAME = "pulldata"
+        private const val MAX_CACHED_LOOKUPS = 64
     }
 }
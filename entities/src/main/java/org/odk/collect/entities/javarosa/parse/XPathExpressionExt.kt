@@ -4,8 +4,11 @@ import org.javarosa.core.model.CompareToNodeExpression
 import org.javarosa.core.model.condition.EvaluationContext
 import org.javarosa.core.model.instance.DataInstance
 import org.javarosa.xpath.expr.XPathBoolExpr
+import org.javarosa.xpath.expr.XPathCmpExpr
 import org.javarosa.xpath.expr.XPathEqExpr
 import org.javarosa.xpath.expr.XPathExpression
+import org.javarosa.xpath.expr.XPathFuncExpr
+import org.javarosa.xpath.expr.XPathPathExpr
 import org.javarosa.xpath.expr.XPathStep
 import org.javarosa.xpath.expr.XPathStep.AXIS_CHILD
 import org.javarosa.xpath.expr.XPathStep.AXIS_SELF
@@ -21,8 +24,9 @@ object XPathExpressionExt {
      * (where `/some/string/ref` evaluates to `"blah"` within the context of the passed
      * `DataInstance` and `EvaluationContext`)
      *
-     * `and`, `or`, `=` and `!=` are all supported. If an expression cannot be converted to a
-     * `Query`, `null` will be returned.
+     * `and`, `or`, `=`, `!=`, `<`, `<=`, `>`, `>=`, `starts-with()`, `contains()` and
+     * `selected()` are all supported. If an expression cannot be converted to a `Query`, `null`
+     * will be returned.
      */
     fun XPathExpression.toQuery(
         sourceInstance: DataInstance<*>,
@@ -31,6 +35,8 @@ object XPathExpressionExt {
         return when (this) {
             is XPathBoolExpr -> xPathBoolExprToQuery(this, sourceInstance, evaluationContext)
             is XPathEqExpr -> xPathEqExprToQuery(this, sourceInstance, evaluationContext)
+            is XPathCmpExpr -> xPathCmpExprToQuery(this, sourceInstance, evaluationContext)
+            is XPathFuncExpr -> xPathFuncExprToQuery(this, sourceInstance, evaluationContext)
             else -> null
         }
     }
@@ -62,15 +68,7 @@ object XPathExpressionExt {
         val candidate = CompareToNodeExpression.parse(predicate)
 
         return if (candidate != null) {
-            val steps = candidate.nodeSide.steps
-            val child = if (steps.size == 1) {
-                steps[0].name.name
-            } else if (isNodeRelativeExpression(steps)) {
-                steps[1].name.name
-            } else {
-                return null
-            }
-
+            val child = getChildName(candidate.nodeSide) ?: return null
             val value = candidate.evalContextSide(sourceInstance, evaluationContext)
 
             if (predicate.isEqual) {
@@ -91,6 +89,97 @@ object XPathExpressionExt {
         }
     }
 
+    private fun xPathCmpExprToQuery(
+        predicate: XPathCmpExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext
+    ): Query? {
+        val candidate = CompareToNodeExpression.parse(predicate) ?: return null
+        val child = getChildName(candidate.nodeSide) ?: return null
+        val nodeOnLeft = candidate.nodeSide === predicate.a
+
+        val value = XPathFuncExpr.toNumeric(candidate.evalContextSide(sourceInstance, evaluationContext))
+        if (value.isNaN()) {
+            return null
+        }
+
+        // Flip the comparison if the node is on the right (`5 < age` is the same as `age > 5`)
+        return when (predicate.op) {
+            XPathCmpExpr.LT -> if (nodeOnLeft) Query.NumericLt(child, value) else Query.NumericGt(child, value)
+            XPathCmpExpr.LTE -> if (nodeOnLeft) Query.NumericLte(child, value) else Query.NumericGte(child, value)
+            XPathCmpExpr.GT -> if (nodeOnLeft) Query.NumericGt(child, value) else Query.NumericLt(child, value)
+            XPathCmpExpr.GTE -> if (nodeOnLeft) Query.NumericGte(child, value) else Query.NumericLte(child, value)
+            else -> null
+        }
+    }
+
+    private fun xPathFuncExprToQuery(
+        predicate: XPathFuncExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext
+    ): Query? {
+        if (predicate.args.size != 2) {
+            return null
+        }
+
+        val (first, second) = predicate.args
+        val candidate = parseArguments(first, second) ?: return null
+        val child = getChildName(candidate.nodeSide) ?: return null
+        val nodeIsFirst = candidate.nodeSide === first
+        val value = XPathFuncExpr.toString(candidate.evalContextSide(sourceInstance, evaluationContext))
+
+        return when (predicate.id.toString()) {
+            "starts-with" -> if (nodeIsFirst) Query.StringStartsWith(child, value) else null
+            "contains" -> if (nodeIsFirst) Query.StringContains(child, value) else null
+            "selected" -> if (nodeIsFirst) {
+                // selected(node, 'value'): the node's list contains the (trimmed) value
+                val trimmedValue = value.trim()
+                if (trimmedValue.isEmpty() || trimmedValue.contains(WHITESPACE)) {
+                    null
+                } else {
+                    Query.ListContains(child, trimmedValue)
+                }
+            } else {
+                // selected(/some/list, node): the list contains the node's (trimmed) value
+                Query.InList(child, value)
+            }
+
+            else -> null
+        }
+    }
+
+    /**
+     * Uses JavaRosa's [CompareToNodeExpression] to work out which of a function's two arguments
+     * is the node side (as it would for `first = second`). Returns `null` if both arguments
+     * depend on the node being filtered.
+     */
+    private fun parseArguments(first: XPathExpression, second: XPathExpression): CompareToNodeExpression? {
+        if (isRelative(first) && isRelative(second)) {
+            return null
+        }
+
+        return CompareToNodeExpression.parse(XPathEqExpr(true, first, second))
+    }
+
+    private fun isRelative(expression: XPathExpression): Boolean {
+        return expression is XPathPathExpr && expression.init_context == XPathPathExpr.INIT_CONTEXT_RELATIVE
+    }
+
+    private fun getChildName(nodeSide: XPathPathExpr): String? {
+        if (!isRelative(nodeSide)) {
+            return null
+        }
+
+        val steps = nodeSide.steps
+        return if (steps.size == 1 && steps[0].test == XPathStep.TEST_NAME) {
+            steps[0].name.name
+        } else if (isNodeRelativeExpression(steps) && steps[1].test == XPathStep.TEST_NAME) {
+            steps[1].name.name
+        } else {
+            null
+        }
+    }
+
     private fun isNodeRelativeExpression(steps: Array<XPathStep>): Boolean {
         return if (steps.size == 2 && steps[0].test == TEST_TYPE_NODE) {
             return steps[0].axis == AXIS_SELF || steps[0].axis == AXIS_CHILD
@@ -98,4 +187,6 @@ object XPathExpressionExt {
             false
         }
     }
+
+    private val WHITESPACE = Regex("\\s+")
 }
@@ -16,8 +16,49 @@ interface EntitiesRepository {
     fun getCount(list: String): Int
     fun addList(list: String)
     fun delete(list: String, id: String)
+
+    /**
+     * Deletes all [Entity.State.ONLINE] entities in [list] whose ids are not in [ids]. [ids]
+     * is only iterated once, so it can be lazily generated from a large source (like a server
+     * entity list) without needing to be held in memory.
+     */
+    fun deleteMissingOnlineEntities(list: String, ids: Sequence<String>)
     fun query(list: String, query: Query? = null): List<Entity.Saved>
     fun getByIndex(list: String, index: Int): Entity.Saved?
+
+    /**
+     * Returns the entities with an [Entity.Saved.index] from [from] (inclusive) to [to]
+     * (exclusive) in index order.
+     */
+    fun getByIndexRange(list: String, from: Int, to: Int): List<Entity.Saved>
+
+    /**
+     * Returns the entities matching any of [ids] in index order. Ids that don't match an entity
+     * are ignored.
+     */
+    fun getByIds(list: String, ids: List<String>): List<Entity.Saved>
+
+    /**
+     * Returns a version number for [list] that changes whenever entities are added to, updated
+     * in or removed from it. This can be used to tell if results from previous queries can
+     * be reused. The version is only valid for the lifetime of the process.
+     */
+    fun getListVersion(list: String): Long
+
+    /**
+     * Saves [entities] from a server entity list and records [digests] (by id) of the server
+     * entity list rows that entities now match. [digests] can include entities that didn't need
+     * to be saved. This allows unchanged rows to be skipped in future updates (see
+     * [getServerDigests]).
+     */
+    fun saveFromServer(list: String, entities: List<Entity>, digests: Map<String, String>)
+
+    /**
+     * Returns the digests recorded by [saveFromServer] for any of [ids] that have one. An
+     * entity's digest is removed whenever it is changed by [save].
+     */
+    fun getServerDigests(list: String, ids: List<String>): Map<String, String>
+
     fun updateList(list: String, hash: String, needsApproval: Boolean)
     fun getList(list: String): EntityList?
 
@@ -8,6 +8,8 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
     private val lists = mutableListOf<EntityList>()
     private val listProperties = mutableMapOf<String, MutableSet<String>>()
     private val entities = mutableMapOf<String, MutableList<Entity.New>>()
+    private val listVersions = mutableMapOf<String, Long>()
+    private val serverDigests = mutableMapOf<String, MutableMap<String, String>>()
 
     override fun getLists(): List<EntityList> {
         return lists
@@ -20,11 +22,23 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
     override fun addList(list: String) {
         if (lists.none { it.name == list }) {
             lists.add(EntityList(list))
+            incrementListVersion(list)
         }
     }
 
     override fun delete(list: String, id: String) {
         entities[list]?.removeIf { it.id == id }
+        serverDigests[list]?.remove(id)
+        incrementListVersion(list)
+    }
+
+    override fun deleteMissingOnlineEntities(list: String, ids: Sequence<String>) {
+        val idSet = ids.toSet()
+        entities[list]?.removeIf { it.state == Entity.State.ONLINE && !idSet.contains(it.id) }
+
+        val remainingIds = entities[list]?.map { it.id }?.toSet() ?: emptySet()
+        serverDigests[list]?.keys?.retainAll(remainingIds)
+        incrementListVersion(list)
     }
 
     override fun query(list: String, query: Query?): List<Entity.Saved> {
@@ -52,6 +66,22 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
         return when (query) {
             is Query.StringEq -> entities.filter { it.getFieldValue(query.column) == query.value }
             is Query.StringNotEq -> entities.filter { it.getFieldValue(query.column) != query.value }
+            is Query.StringStartsWith -> entities.filter {
+                it.getFieldValue(query.column).startsWith(query.value)
+            }
+
+            is Query.StringContains -> entities.filter {
+                it.getFieldValue(query.column).contains(query.value)
+            }
+
+            is Query.ListContains -> entities.filter {
+                it.getFieldValue(query.column).split(" ").contains(query.value)
+            }
+
+            is Query.InList -> entities.filter {
+                " ${query.list} ".contains(" ${Query.trimValue(it.getFieldValue(query.column))} ")
+            }
+
             is Query.NumericEq -> entities.filter {
                 it.getFieldValue(query.column).toDoubleOrNull() == query.value
             }
@@ -60,16 +90,60 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
                 it.getFieldValue(query.column).toDoubleOrNull() != query.value
             }
 
+            is Query.NumericLt -> entities.filter {
+                Query.toNumberOrNaN(it.getFieldValue(query.column)) < query.value
+            }
+
+            is Query.NumericLte -> entities.filter {
+                Query.toNumberOrNaN(it.getFieldValue(query.column)) <= query.value
+            }
+
+            is Query.NumericGt -> entities.filter {
+                Query.toNumberOrNaN(it.getFieldValue(query.column)) > query.value
+            }
+
+            is Query.NumericGte -> entities.filter {
+                Query.toNumberOrNaN(it.getFieldValue(query.column)) >= query.value
+            }
+
             is Query.And -> query(list, query.queryA).intersect(query(list, query.queryB)).toList()
             is Query.Or -> query(list, query.queryA).union(query(list, query.queryB)).toList()
             null -> entities
         }
     }
 
+    override fun getListVersion(list: String): Long {
+        return listVersions.getOrDefault(list, 0)
+    }
+
+    override fun getServerDigests(list: String, ids: List<String>): Map<String, String> {
+        val digests = serverDigests[list] ?: return emptyMap()
+        return ids.filter { digests.containsKey(it) }.associateWith { digests[it]!! }
+    }
+
+    override fun saveFromServer(list: String, entities: List<Entity>, digests: Map<String, String>) {
+        if (entities.isNotEmpty()) {
+            save(list, *entities.toTypedArray())
+        }
+
+        val existingIds = this.entities[list]?.map { it.id }?.toSet() ?: return
+        serverDigests.getOrPut(list) { mutableMapOf() }
+            .putAll(digests.filterKeys { existingIds.contains(it) })
+    }
+
     override fun getByIndex(list: String, index: Int): Entity.Saved? {
         return query(list).firstOrNull { it.index == index }
     }
 
+    override fun getByIndexRange(list: String, from: Int, to: Int): List<Entity.Saved> {
+        return query(list).filter { it.index in from until to }
+    }
+
+    override fun getByIds(list: String, ids: List<String>): List<Entity.Saved> {
+        val idSet = ids.toSet()
+        return query(list).filter { idSet.contains(it.id) }
+    }
+
     override fun updateList(list: String, hash: String, needsApproval: Boolean) {
         val existing = lists.firstOrNull { it.name == list }
         if (existing != null) {
@@ -93,6 +167,8 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
                 .filter { property -> properties.none { it.equals(property, ignoreCase = true) } }
             listProperties.removeAll(removedProperties.toSet())
         }
+
+        incrementListVersion(list)
     }
 
     override fun save(list: String, vararg entities: Entity) {
@@ -100,6 +176,7 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
 
         entities.forEach { entity ->
             updateLists(list, entity)
+            serverDigests[list]?.remove(entity.id)
             val existing = entityList.find { it.id == entity.id }
 
             if (existing != null) {
@@ -134,6 +211,12 @@ class InMemEntitiesRepository(private val clock: () -> Long = { 0 }) : EntitiesR
                 )
             }
         }
+
+        incrementListVersion(list)
+    }
+
+    private fun incrementListVersion(list: String) {
+        listVersions[list] = getListVersion(list) + 1
     }
 
     private fun updateLists(list: String, entity: Entity) {
@@ -753,6 +753,118 @@ class LocalEntityUseCasesTest {
         assertThat(songs[1].label, equalTo("Midnight City"))
     }
 
+    @Test
+    fun `#updateLocalEntitiesFromServer updates and removes entities in lists larger than a single batch`() {
+        val firstCsv = createEntityList(
+            *(0 until 2500).map { Entity.New(it.toString(), "Song $it") }.toTypedArray()
+        )
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            firstCsv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "1")
+        )
+        assertThat(entitiesRepository.getCount("songs"), equalTo(2500))
+
+        val secondCsv = createEntityList(
+            *(500 until 2500).map { Entity.New(it.toString(), "Song $it (Remix)", 2) }.toTypedArray()
+        )
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            secondCsv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "2")
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(2000))
+        assertThat(songs.all { it.version == 2 && it.label!!.endsWith("(Remix)") }, equalTo(true))
+    }
+
+    @Test
+    fun `#updateLocalEntitiesFromServer does nothing if a row after the first batch is malformed`() {
+        val firstCsv = createEntityList(Entity.New("0", "Song 0"))
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            firstCsv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "1")
+        )
+
+        val rows = (1 until 1500).map { listOf(it.toString(), "Song $it", "1") } +
+            listOf(listOf("1500", "Song 1500", "not a version"))
+        val secondCsv = createCsv(
+            listOf(EntitySchema.ID, EntitySchema.LABEL, EntitySchema.VERSION),
+            *rows.toTypedArray()
+        )
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            secondCsv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "2")
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(1))
+        assertThat(songs[0].label, equalTo("Song 0"))
+        assertThat(entitiesRepository.getList("songs")!!.hash, equalTo("1"))
+    }
+
+    @Test
+    fun `#updateLocalEntitiesFromServer only looks up local entities for rows that have changed since the last update`() {
+        val entitiesRepository = MeasurableEntitiesRepository(entitiesRepository)
+
+        val noah = Entity.New("noah", "Noah", 1, properties = listOf("length" to "4:33"))
+        val seasons = Entity.New("seasons", "Seasons", 1, properties = listOf("length" to "2:00"))
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(noah, seasons),
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "1")
+        )
+
+        val lookedUpBefore = entitiesRepository.lookedUpEntities
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(noah, seasons.copy(label = "Seasons (Remix)", version = 2)),
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "2")
+        )
+        assertThat(entitiesRepository.lookedUpEntities - lookedUpBefore, equalTo(1))
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(2))
+        assertThat(songs[0].label, equalTo("Noah"))
+        assertThat(songs[1].label, equalTo("Seasons (Remix)"))
+    }
+
+    @Test
+    fun `#updateLocalEntitiesFromServer does not overwrite local changes made since the last update when the row has not changed`() {
+        val noah = Entity.New("noah", "Noah", 1)
+        val csv = createEntityList(noah)
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            csv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "1")
+        )
+
+        val local = entitiesRepository.query("songs")[0]
+        entitiesRepository.save("songs", local.copy(label = "Noah (Local)", version = 2))
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            csv,
+            entitiesRepository,
+            FormFixtures.mediaFile(hash = "2")
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(1))
+        assertThat(songs[0].label, equalTo("Noah (Local)"))
+        assertThat(songs[0].version, equalTo(2))
+    }
+
     private fun createEntityList(vararg entities: Entity): File {
         if (entities.isNotEmpty()) {
             val header = listOf(
@@ -805,6 +917,9 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
     var savedEntities: Int = 0
         private set
 
+    var lookedUpEntities: Int = 0
+        private set
+
     override fun save(list: String, vararg entities: Entity) {
         accesses += 1
         savedEntities += entities.size
@@ -830,6 +945,11 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         wrapped.delete(list, id)
     }
 
+    override fun deleteMissingOnlineEntities(list: String, ids: Sequence<String>) {
+        accesses += 1
+        wrapped.deleteMissingOnlineEntities(list, ids)
+    }
+
     override fun query(list: String, query: Query?): List<Entity.Saved> {
         accesses += 1
         return wrapped.query(list, query)
@@ -840,6 +960,32 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         return wrapped.getByIndex(list, index)
     }
 
+    override fun getByIndexRange(list: String, from: Int, to: Int): List<Entity.Saved> {
+        accesses += 1
+        return wrapped.getByIndexRange(list, from, to)
+    }
+
+    override fun getByIds(list: String, ids: List<String>): List<Entity.Saved> {
+        accesses += 1
+        lookedUpEntities += ids.size
+        return wrapped.getByIds(list, ids)
+    }
+
+    override fun getServerDigests(list: String, ids: List<String>): Map<String, String> {
+        accesses += 1
+        return wrapped.getServerDigests(list, ids)
+    }
+
+    override fun saveFromServer(list: String, entities: List<Entity>, digests: Map<String, String>) {
+        accesses += 1
+        savedEntities += entities.size
+        wrapped.saveFromServer(list, entities, digests)
+    }
+
+    override fun getListVersion(list: String): Long {
+        return wrapped.getListVersion(list)
+    }
+
     override fun updateList(list: String, hash: String, needsApproval: Boolean) {
         accesses += 1
         wrapped.updateList(list, hash, false)
@@ -0,0 +1,144 @@
+package org.odk.collect.entities.browser
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.sameInstance
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.entities.browser.EntitiesViewModel.Companion.PAGE_SIZE
+import org.odk.collect.entities.storage.Entity
+import org.odk.collect.entities.storage.InMemEntitiesRepository
+import org.odk.collect.testshared.FakeScheduler
+
+@RunWith(AndroidJUnit4::class)
+class EntitiesViewModelTest {
+
+    @get:Rule
+    val instantTaskExecutorRule = InstantTaskExecutorRule()
+
+    private val scheduler = FakeScheduler()
+    private val entitiesRepository = InMemEntitiesRepository()
+
+    @Test
+    fun `#getEntities loads the first page`() {
+        saveEntities("songs", PAGE_SIZE + 50)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+
+        assertThat(entities.value!!.map { it.id }, equalTo((0 until PAGE_SIZE).map { it.toString() }))
+    }
+
+    @Test
+    fun `#loadMoreEntities appends pages until the last page is loaded`() {
+        saveEntities("songs", PAGE_SIZE * 2 + 50)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2))
+
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(
+            entities.value!!.map { it.id },
+            equalTo((0 until PAGE_SIZE * 2 + 50).map { it.toString() })
+        )
+
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2 + 50))
+    }
+
+    @Test
+    fun `#loadMoreEntities stops loading after an empty page when the list ends on a page boundary`() {
+        saveEntities("songs", PAGE_SIZE * 2)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2))
+
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2))
+
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2))
+    }
+
+    @Test
+    fun `#loadMoreEntities loads the next page if it is called while the first page is loading`() {
+        saveEntities("songs", PAGE_SIZE * 2)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+
+        assertThat(entities.value!!.size, equalTo(PAGE_SIZE * 2))
+    }
+
+    @Test
+    fun `#getEntities does not reload entities if the list has not changed`() {
+        saveEntities("songs", PAGE_SIZE + 50)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+        val loaded = entities.value
+
+        viewModel.getEntities("songs")
+        scheduler.flush()
+        assertThat(entities.value, sameInstance(loaded))
+    }
+
+    @Test
+    fun `#getEntities reloads from the first page if the list has changed`() {
+        saveEntities("songs", PAGE_SIZE + 50)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+
+        entitiesRepository.delete("songs", "0")
+        viewModel.getEntities("songs")
+        scheduler.flush()
+
+        assertThat(entities.value!!.map { it.id }, equalTo((1..PAGE_SIZE).map { it.toString() }))
+    }
+
+    @Test
+    fun `#loadMoreEntities reloads from the first page if the list has changed`() {
+        saveEntities("songs", PAGE_SIZE + 50)
+        val viewModel = EntitiesViewModel(scheduler, entitiesRepository)
+
+        val entities = viewModel.getEntities("songs")
+        scheduler.flush()
+
+        entitiesRepository.delete("songs", "0")
+        viewModel.loadMoreEntities("songs")
+        scheduler.flush()
+
+        assertThat(entities.value!!.map { it.id }, equalTo((1..PAGE_SIZE).map { it.toString() }))
+    }
+
+    private fun saveEntities(list: String, count: Int) {
+        entitiesRepository.save(
+            list,
+            *(0 until count).map { Entity.New(it.toString(), "Song $it") }.toTypedArray()
+        )
+    }
+}
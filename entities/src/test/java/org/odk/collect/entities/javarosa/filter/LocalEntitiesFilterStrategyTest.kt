@@ -204,7 +204,7 @@ class LocalEntitiesFilterStrategyTest {
     }
 
     @Test
-    fun `works correctly but not in the optimized way with non eq name expressions`() {
+    fun `works correctly but not in the optimized way with unsupported name expressions`() {
         entitiesRepository.save("things", Entity.New("thing", "Thing"))
 
         val scenario = Scenario.init(
@@ -222,7 +222,7 @@ class LocalEntitiesFilterStrategyTest {
                         t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
                         bind("/data/question").type("string"),
                         bind("/data/calculate").type("string")
-                            .calculate("instance('things')/root/item[starts-with(name, 'thing')]/label")
+                            .calculate("instance('things')/root/item[substring(name, 1, 5) = 'thing']/label")
                     )
                 ),
                 body(
@@ -411,6 +411,92 @@ class LocalEntitiesFilterStrategyTest {
         assertThat(instanceProvider.fullParsePerformed, equalTo(false))
     }
 
+    @Test
+    fun `works correctly in the optimized way with property comparison expressions`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New(
+                "thing1",
+                "Thing1",
+                properties = listOf("age" to "25")
+            )
+        )
+
+        entitiesRepository.save(
+            "things",
+            Entity.New(
+                "thing2",
+                "Thing2",
+                properties = listOf("age" to "30")
+            )
+        )
+
+        val scenario = Scenario.init(
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[age > 26]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing2"))
+        assertThat(instanceProvider.fullParsePerformed, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with starts-with expressions`() {
+        entitiesRepository.save("things", Entity.New("thing", "Thing"))
+        entitiesRepository.save("things", Entity.New("other", "Other"))
+
+        val scenario = Scenario.init(
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question"),
+                                t("calculate")
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string"),
+                        bind("/data/calculate").type("string")
+                            .calculate("instance('things')/root/item[starts-with(name, 'th')]/label")
+                    )
+                ),
+                body(
+                    input("/data/calculate")
+                )
+            ),
+            controllerSupplier
+        )
+
+        assertThat(scenario.answerOf<StringData>("/data/calculate").value, equalTo("Thing"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
     @Test
     fun `replaces partial elements when entity matches property`() {
         entitiesRepository.save(
@@ -177,4 +177,49 @@ class PullDataFunctionHandlerTest {
 
         assertThat(scenario.answerOf<StringData>("/data/calculate"), equalTo(null))
     }
+
+    @Test
+    fun `returns updated value when list changes`() {
+        val entitiesRepository = InMemEntitiesRepository()
+        entitiesRepository.save(
+            "things",
+            Entity.New("one", "One")
+        )
+
+        val scenario = Scenario.init(
+            html(
+                head(
+                    title("Pull data form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"pull-data-form\"",
+                                t("question"),
+                                t("calculate")
+                            )
+                        ),
+                        bind("/data/question").type("string"),
+                        bind("/data/calculate").type("string")
+                            .calculate("pulldata('things', 'label', 'name', /data/question)")
+                    )
+                ),
+                body(
+                    input("/data/question"),
+                    input("/data/calculate")
+                )
+            )
+        ) { formDef ->
+            FormEntryController(FormEntryModel(formDef)).also {
+                it.addFunctionHandler(PullDataFunctionHandler(entitiesRepository))
+            }
+        }
+
+        scenario.answer("/data/question", "one")
+        assertThat(scenario.answerOf<StringData>("/data/calculate").value, equalTo("One"))
+
+        entitiesRepository.save("things", Entity.New("one", "One updated", version = 2))
+        scenario.answer("/data/question", "two")
+        scenario.answer("/data/question", "one")
+        assertThat(scenario.answerOf<StringData>("/data/calculate").value, equalTo("One updated"))
+    }
 }
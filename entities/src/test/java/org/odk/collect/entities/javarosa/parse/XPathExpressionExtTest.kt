@@ -58,4 +58,114 @@ class XPathExpressionExtTest {
             equalTo(null)
         )
     }
+
+    @Test
+    fun `#toQuery returns Query for comparisons`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        assertThat(
+            XPathParseTool.parseXPath("age < 5").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.NumericLt("age", 5.0))
+        )
+        assertThat(
+            XPathParseTool.parseXPath("age <= 5").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.NumericLte("age", 5.0))
+        )
+        assertThat(
+            XPathParseTool.parseXPath("age > 5").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.NumericGt("age", 5.0))
+        )
+        assertThat(
+            XPathParseTool.parseXPath("./age >= 5").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.NumericGte("age", 5.0))
+        )
+    }
+
+    @Test
+    fun `#toQuery flips comparisons when node side is on the right`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("5 < age")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.NumericGt("age", 5.0))
+        )
+    }
+
+    @Test
+    fun `#toQuery returns null for comparisons with non numeric values`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("age < 'blah'")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(null)
+        )
+    }
+
+    @Test
+    fun `#toQuery returns Query for starts-with and contains`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        assertThat(
+            XPathParseTool.parseXPath("starts-with(label, 'bl')").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.StringStartsWith("label", "bl"))
+        )
+        assertThat(
+            XPathParseTool.parseXPath("contains(./label, 'la')").toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.StringContains("label", "la"))
+        )
+    }
+
+    @Test
+    fun `#toQuery returns Query for selected with node as the list`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("selected(colors, 'red')")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.ListContains("colors", "red"))
+        )
+    }
+
+    @Test
+    fun `#toQuery returns Query for selected with node as the value`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("selected('red blue', color)")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.InList("color", "red blue"))
+        )
+    }
+
+    @Test
+    fun `#toQuery trims the value for selected with node as the list`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("selected(colors, ' red ')")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(Query.ListContains("colors", "red"))
+        )
+    }
+
+    @Test
+    fun `#toQuery returns null for functions with node side on both sides`() {
+        val sourceInstance = ExternalDataInstance()
+        val evaluationContext = EvaluationContext(sourceInstance)
+
+        val expression = XPathParseTool.parseXPath("starts-with(label, name)")
+        assertThat(
+            expression.toQuery(sourceInstance, evaluationContext),
+            equalTo(null)
+        )
+    }
 }
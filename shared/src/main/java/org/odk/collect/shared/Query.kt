@@ -1,19 +1,73 @@
 package org.odk.collect.shared
 
 import org.odk.collect.shared.Query.And
+import org.odk.collect.shared.Query.InList
+import org.odk.collect.shared.Query.ListContains
 import org.odk.collect.shared.Query.NumericEq
+import org.odk.collect.shared.Query.NumericGt
+import org.odk.collect.shared.Query.NumericGte
+import org.odk.collect.shared.Query.NumericLt
+import org.odk.collect.shared.Query.NumericLte
 import org.odk.collect.shared.Query.NumericNotEq
 import org.odk.collect.shared.Query.Or
+import org.odk.collect.shared.Query.StringContains
 import org.odk.collect.shared.Query.StringEq
 import org.odk.collect.shared.Query.StringNotEq
+import org.odk.collect.shared.Query.StringStartsWith
 
 sealed class Query {
     data class StringEq(val column: String, val value: String) : Query()
     data class StringNotEq(val column: String, val value: String) : Query()
+    data class StringStartsWith(val column: String, val value: String) : Query()
+    data class StringContains(val column: String, val value: String) : Query()
+
+    /**
+     * Matches when [column] is a space separated list (like the answer to a multiple select
+     * question) that contains [value].
+     */
+    data class ListContains(val column: String, val value: String) : Query()
+
+    /**
+     * Matches when [list] is a space separated list that contains the value of [column] (with
+     * surrounding whitespace removed). This is the same as `selected(list, column)` in XPath.
+     */
+    data class InList(val column: String, val list: String) : Query()
+
     data class NumericEq(val column: String, val value: Double) : Query()
     data class NumericNotEq(val column: String, val value: Double) : Query()
+    data class NumericLt(val column: String, val value: Double) : Query()
+    data class NumericLte(val column: String, val value: Double) : Query()
+    data class NumericGt(val column: String, val value: Double) : Query()
+    data class NumericGte(val column: String, val value: Double) : Query()
     data class And(val queryA: Query, val queryB: Query) : Query()
     data class Or(val queryA: Query, val queryB: Query) : Query()
+
+    companion object {
+
+        /**
+         * Removes surrounding whitespace from a value before it's compared (like XPath's
+         * `selected()` does).
+         */
+        @JvmStatic
+        fun trimValue(value: String): String {
+            return value.trim(' ', '\t', '\n', '\r')
+        }
+
+        /**
+         * Converts a value to a number for [NumericLt], [NumericLte], [NumericGt] and
+         * [NumericGte] the same way XPath does: only digits with an optional leading `-` and
+         * at most one `.` are numbers. Anything else is `NaN` (so never matches a comparison).
+         */
+        @JvmStatic
+        fun toNumberOrNaN(value: String): Double {
+            val trimmed = trimValue(value)
+            return if (trimmed.any { it != '-' && it != '.' && it !in '0'..'9' }) {
+                Double.NaN
+            } else {
+                trimmed.toDoubleOrNull() ?: Double.NaN
+            }
+        }
+    }
 }
 
 fun Query.mapColumns(columnMapper: (String) -> String): Query {
@@ -22,10 +76,26 @@ fun Query.mapColumns(columnMapper: (String) -> String): Query {
 
         is StringNotEq -> StringNotEq(columnMapper(column), value)
 
+        is StringStartsWith -> StringStartsWith(columnMapper(column), value)
+
+        is StringContains -> StringContains(columnMapper(column), value)
+
+        is ListContains -> ListContains(columnMapper(column), value)
+
+        is InList -> InList(columnMapper(column), list)
+
         is NumericEq -> NumericEq(columnMapper(column), value)
 
         is NumericNotEq -> NumericNotEq(columnMapper(column), value)
 
+        is NumericLt -> NumericLt(columnMapper(column), value)
+
+        is NumericLte -> NumericLte(columnMapper(column), value)
+
+        is NumericGt -> NumericGt(columnMapper(column), value)
+
+        is NumericGte -> NumericGte(columnMapper(column), value)
+
         is And -> And(
             queryA.mapColumns(columnMapper),
             queryB.mapColumns(columnMapper)
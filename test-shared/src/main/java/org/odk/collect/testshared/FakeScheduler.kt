@@ -64,6 +64,13 @@ class FakeScheduler : Scheduler {
     ) {
     }
 
+    override fun deferred(
+        tag: String,
+        spec: TaskSpec,
+        inputData: Map<String, String>
+    ) {
+    }
+
     override fun networkDeferredRepeat(
         tag: String,
         taskSpec: TaskSpec,